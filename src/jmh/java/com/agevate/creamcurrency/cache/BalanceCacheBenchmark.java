@@ -0,0 +1,85 @@
+package com.agevate.creamcurrency.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BalanceCache} with the map it replaced: a
+ * ConcurrentHashMap keyed by "uuid:currencyId" strings holding boxed doubles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BalanceCacheBenchmark {
+
+    private static final String[] CURRENCIES = { "money", "gems", "tokens", "credits" };
+
+    @Param({ "1000" })
+    public int players;
+
+    private UUID[] uuids;
+    private BalanceCache cache;
+    private Map<String, Double> map;
+
+    @Setup
+    public void setup() {
+        uuids = new UUID[players];
+        cache = new BalanceCache();
+        map = new ConcurrentHashMap<>();
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            for (String currency : CURRENCIES) {
+                cache.set(uuids[i], currency, 1_000_000L);
+                map.put(uuids[i] + ":" + currency, 100.0);
+            }
+        }
+    }
+
+    private UUID randomPlayer() {
+        return uuids[ThreadLocalRandom.current().nextInt(uuids.length)];
+    }
+
+    private static String randomCurrency() {
+        return CURRENCIES[ThreadLocalRandom.current().nextInt(CURRENCIES.length)];
+    }
+
+    @Benchmark
+    public long cacheGet() {
+        return cache.getUnits(randomPlayer(), randomCurrency());
+    }
+
+    @Benchmark
+    public Double mapGet() {
+        return map.get(randomPlayer() + ":" + randomCurrency());
+    }
+
+    @Benchmark
+    public long cacheAdd() {
+        return cache.addIfPresent(randomPlayer(), randomCurrency(), 1);
+    }
+
+    @Benchmark
+    public Double mapAdd() {
+        return map.computeIfPresent(randomPlayer() + ":" + randomCurrency(), (key, balance) -> balance + 0.0001);
+    }
+}
@@ -0,0 +1,93 @@
+package com.agevate.creamcurrency.currency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CurrencyFormatter} with the shared DecimalFormat it
+ * replaced, which had to be synchronized to be used from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CurrencyFormatterBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({ "#,##0.00", "#,##0" })
+    public String pattern;
+
+    private CurrencyFormatter formatter;
+    private DecimalFormat decimalFormat;
+    private long[] units;
+    private double[] amounts;
+
+    @Setup
+    public void setUp() {
+        formatter = CurrencyFormatter.compile(pattern, "$", true);
+        decimalFormat = new DecimalFormat(pattern, new DecimalFormatSymbols(Locale.US));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        units = new long[SIZE];
+        amounts = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            units[i] = random.nextLong(10_000_000_000_000L);
+            amounts[i] = Money.storageUnitsToDouble(units[i]);
+        }
+    }
+
+    private static int index() {
+        return ThreadLocalRandom.current().nextInt(SIZE);
+    }
+
+    @Benchmark
+    public String formatUnits() {
+        return formatter.format(units[index()], Money.STORAGE_SCALE);
+    }
+
+    @Benchmark
+    public String formatDouble() {
+        return formatter.format(amounts[index()]);
+    }
+
+    @Benchmark
+    public String formatCompact() {
+        return formatter.formatCompact(units[index()]);
+    }
+
+    @Benchmark
+    public String decimalFormatDouble() {
+        double amount = amounts[index()];
+        synchronized (decimalFormat) {
+            return "$" + decimalFormat.format(amount);
+        }
+    }
+
+    @Benchmark
+    public String decimalFormatBigDecimal() {
+        BigDecimal amount = BigDecimal.valueOf(units[index()], Money.STORAGE_SCALE);
+        synchronized (decimalFormat) {
+            return "$" + decimalFormat.format(amount);
+        }
+    }
+}
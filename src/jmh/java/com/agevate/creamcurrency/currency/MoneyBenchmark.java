@@ -0,0 +1,145 @@
+package com.agevate.creamcurrency.currency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link Money} with the double arithmetic it replaced: parsing a
+ * command amount, and applying a payment to two balances. The double
+ * variants are copies of the old code paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final String[] INPUTS = { "250", "12.5", "1.5k", "0.01", "99999.99", "2m", "7.25b", "1t" };
+
+    // The old NumberUtils pattern
+    private static final Pattern PATTERN = Pattern.compile("^([0-9]+(?:\\.[0-9]+)?)([kKmMbBtT]?)$");
+
+    private static final int SIZE = 1024;
+
+    private String[] inputs;
+    private long[] balances;
+    private long[] amounts;
+    private double[] doubleBalances;
+    private double[] doubleAmounts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        inputs = new String[SIZE];
+        balances = new long[SIZE];
+        amounts = new long[SIZE];
+        doubleBalances = new double[SIZE];
+        doubleAmounts = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            inputs[i] = INPUTS[i % INPUTS.length];
+            balances[i] = random.nextLong(1_000_000_000L);
+            amounts[i] = random.nextLong(1, 1_000_000L);
+            doubleBalances[i] = balances[i] / 100.0;
+            doubleAmounts[i] = amounts[i] / 100.0;
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (SIZE - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return Money.parse(inputs[nextIndex()], 2);
+    }
+
+    @Benchmark
+    public double parseDouble() {
+        return parseAmountDouble(inputs[nextIndex()]);
+    }
+
+    @Benchmark
+    public void transferMoney(Blackhole blackhole) {
+        int i = nextIndex();
+        Money from = Money.ofUnits(balances[i], 2);
+        Money to = Money.ofUnits(balances[(i + 1) & (SIZE - 1)], 2);
+        Money amount = Money.ofUnits(amounts[i], 2);
+        if (from.compareTo(amount) >= 0) {
+            blackhole.consume(from.minus(amount).toStorageUnits());
+            blackhole.consume(to.plus(amount).toStorageUnits());
+        }
+    }
+
+    @Benchmark
+    public void transferStorageUnits(Blackhole blackhole) {
+        int i = nextIndex();
+        long from = balances[i];
+        long to = balances[(i + 1) & (SIZE - 1)];
+        long amount = amounts[i];
+        if (from >= amount) {
+            blackhole.consume(Math.subtractExact(from, amount));
+            blackhole.consume(Math.addExact(to, amount));
+        }
+    }
+
+    @Benchmark
+    public void transferDouble(Blackhole blackhole) {
+        int i = nextIndex();
+        double from = doubleBalances[i];
+        double to = doubleBalances[(i + 1) & (SIZE - 1)];
+        double amount = doubleAmounts[i];
+        if (from >= amount) {
+            blackhole.consume(from - amount);
+            blackhole.consume(to + amount);
+        }
+    }
+
+    @Benchmark
+    public long doubleToStorageUnits() {
+        return Money.toStorageUnits(doubleAmounts[nextIndex()]);
+    }
+
+    @Benchmark
+    public Money storageUnitsToMoney() {
+        return Money.fromStorageUnits(balances[nextIndex()], 2);
+    }
+
+    private static double parseAmountDouble(String input) {
+        Matcher matcher = PATTERN.matcher(input);
+        if (!matcher.matches()) {
+            throw new NumberFormatException("Invalid format");
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        switch (matcher.group(2).toLowerCase(Locale.ROOT)) {
+            case "k":
+                return amount * 1_000;
+            case "m":
+                return amount * 1_000_000;
+            case "b":
+                return amount * 1_000_000_000;
+            case "t":
+                return amount * 1_000_000_000_000L;
+            default:
+                return amount;
+        }
+    }
+}
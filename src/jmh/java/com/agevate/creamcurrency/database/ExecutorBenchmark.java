@@ -0,0 +1,112 @@
+package com.agevate.creamcurrency.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two executors the DAO can run database tasks on, for a burst
+ * of tasks against a slow database: the fixed pool of platform threads, and
+ * a virtual thread per task limited by a semaphore with one permit per
+ * connection. The database is simulated by a pool of {@code connections}
+ * permits, each held for {@code latencyMs} per task, so only the scheduling
+ * differs. Both executors are built the way
+ * {@code PlayerDataDAO.createExecutor()} builds them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    // Connections of the simulated database: the SQLite default (4 readers + the writer) and the MySQL one
+    @Param({ "5", "10" })
+    public int connections;
+
+    @Param({ "1", "5" })
+    public int latencyMs;
+
+    @Param({ "500" })
+    public int burst;
+
+    private Semaphore database;
+    private ExecutorService fixedPool;
+    private ExecutorService virtualThreads;
+
+    @Setup
+    public void setUp() {
+        database = new Semaphore(connections, true);
+        fixedPool = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "CreamCurrency-DB-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore running = new Semaphore(connections);
+        ThreadFactory virtual = Thread.ofVirtual().name("CreamCurrency-DB-Virtual-", 0).factory();
+        virtualThreads = Executors.newThreadPerTaskExecutor(r -> virtual.newThread(() -> {
+            running.acquireUninterruptibly();
+            try {
+                r.run();
+            } finally {
+                running.release();
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixedPool.shutdownNow();
+        virtualThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public void fixedPool() {
+        runBurst(fixedPool);
+    }
+
+    @Benchmark
+    public void virtualThreads() {
+        runBurst(virtualThreads);
+    }
+
+    /**
+     * Submits the burst and waits until every task is done.
+     */
+    void runBurst(ExecutorService executor) {
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[burst];
+        for (int i = 0; i < burst; i++) {
+            tasks[i] = CompletableFuture.runAsync(this::query, executor);
+        }
+        CompletableFuture.allOf(tasks).join();
+    }
+
+    // Borrows a connection and waits for the query, like a blocking JDBC call
+    private void query() {
+        database.acquireUninterruptibly();
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            database.release();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.agevate.creamcurrency.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link StatementCache} with preparing and closing the statement on
+ * every call, which the SQLite connections did before: a balance lookup and
+ * the add upsert with RETURNING, both on the DAO's queries. One connection
+ * is used throughout, so only the statement handling differs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementCacheBenchmark {
+
+    private static final String SQL_SELECT = "SELECT balance FROM cream_balances WHERE player_uuid = ? AND currency_id = ?";
+
+    private static final String SQL_ADD = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT (player_uuid, currency_id) DO UPDATE SET balance = balance + ? "
+            + "RETURNING balance";
+
+    @Param({ "1000" })
+    public int players;
+
+    private File file;
+    private Connection connection;
+    private StatementCache cache;
+    private byte[][] uuids;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("statements", ".db").toFile();
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.execute("CREATE TABLE cream_balances (player_uuid BLOB NOT NULL, player_name VARCHAR(16), "
+                    + "currency_id VARCHAR(32) NOT NULL, balance BIGINT NOT NULL, PRIMARY KEY (player_uuid, currency_id))");
+        }
+        uuids = new byte[players][];
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO cream_balances (player_uuid, currency_id, balance) VALUES (?, 'money', ?)")) {
+            for (int i = 0; i < players; i++) {
+                uuids[i] = SchemaMigrator.uuidToBytes(UUID.randomUUID());
+                insert.setBytes(1, uuids[i]);
+                insert.setLong(2, 1_000_000L);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        cache = new StatementCache(connection, 32);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+    }
+
+    private byte[] nextPlayer() {
+        next = next + 1 == players ? 0 : next + 1;
+        return uuids[next];
+    }
+
+    @Benchmark
+    public long selectCached() throws SQLException {
+        try (PreparedStatement statement = cache.prepare(SQL_SELECT)) {
+            return select(statement, nextPlayer());
+        }
+    }
+
+    @Benchmark
+    public long selectPrepared() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT)) {
+            return select(statement, nextPlayer());
+        }
+    }
+
+    @Benchmark
+    public long addCached() throws SQLException {
+        try (PreparedStatement statement = cache.prepare(SQL_ADD)) {
+            return add(statement, nextPlayer());
+        }
+    }
+
+    @Benchmark
+    public long addPrepared() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_ADD)) {
+            return add(statement, nextPlayer());
+        }
+    }
+
+    private static long select(PreparedStatement statement, byte[] uuid) throws SQLException {
+        statement.setBytes(1, uuid);
+        statement.setString(2, "money");
+        try (ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static long add(PreparedStatement statement, byte[] uuid) throws SQLException {
+        statement.setBytes(1, uuid);
+        statement.setString(2, null);
+        statement.setString(3, "money");
+        statement.setLong(4, 1);
+        statement.setLong(5, 1);
+        try (ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.agevate.creamcurrency.hook;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.cache.BalanceCache;
+import com.agevate.creamcurrency.cache.LeaderboardCache;
+import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.CurrencyManager;
+import com.agevate.creamcurrency.currency.Money;
+import com.agevate.creamcurrency.database.PlayerDataDAO;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CreamPlaceholderExpansion#onRequest} the way a scoreboard
+ * plugin calls it: the same few placeholders for every online player, with
+ * balances mostly unchanged between calls. The baseline is a copy of the
+ * request path it replaced, which parsed the params string and formatted the
+ * balance with DecimalFormat on every call.
+ * <p>
+ * The plugin, DAO and currency manager are created without running their
+ * constructors (which need a server) and only get the fields onRequest uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceholderBenchmark {
+
+    private static final String[] PARAMS = { "balance_money", "formatted_money", "raw_balance_money", "symbol_money" };
+
+    @Param({ "1000" })
+    public int players;
+
+    // Share of calls that see a changed balance
+    @Param({ "0", "10" })
+    public int changedPercent;
+
+    private CreamCurrency plugin;
+    private CreamPlaceholderExpansion expansion;
+    private BalanceCache cache;
+    private OfflinePlayer[] onlinePlayers;
+    private int next;
+
+    // State of the old path: boxed doubles keyed by "uuid:currencyId"
+    private final Map<String, Double> legacyCache = new ConcurrentHashMap<>();
+    private DecimalFormat legacyFormat;
+    private final DecimalFormat legacyCompactFormat = new DecimalFormat("#,##0.##");
+
+    @Setup
+    public void setUp() throws Exception {
+        File file = Files.createTempFile("money", ".yml").toFile();
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "name: \"Money\"\nsymbol: \"$\"\nformat: \"#,##0.00\"\n");
+        Currency money = new Currency("money", file);
+
+        CurrencyManager currencyManager = new CurrencyManager(null);
+        @SuppressWarnings("unchecked")
+        Map<String, Currency> currencies = (Map<String, Currency>) get(currencyManager, "currencies");
+        currencies.put("money", money);
+
+        cache = new BalanceCache();
+        PlayerDataDAO dao = allocate(PlayerDataDAO.class);
+        set(dao, "cache", cache);
+        set(dao, "leaderboard", new LeaderboardCache());
+
+        plugin = allocate(CreamCurrency.class);
+        set(plugin, "currencyManager", currencyManager);
+        set(plugin, "playerDataDAO", dao);
+
+        // The constructor registers a listener with the server
+        expansion = allocate(CreamPlaceholderExpansion.class);
+        set(expansion, "plugin", plugin);
+        set(expansion, "parsed", new ConcurrentHashMap<>());
+        set(expansion, "rendered", new ConcurrentHashMap<>());
+        set(expansion, "generation", -1);
+
+        legacyFormat = new DecimalFormat(money.getFormat(), new DecimalFormatSymbols(Locale.US));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        onlinePlayers = new OfflinePlayer[players];
+        for (int i = 0; i < players; i++) {
+            UUID uuid = UUID.randomUUID();
+            onlinePlayers[i] = onlinePlayer(uuid);
+            long units = random.nextLong(10_000_000_000L);
+            cache.set(uuid, "money", units);
+            legacyCache.put(uuid + ":money", Money.storageUnitsToDouble(units));
+        }
+    }
+
+    @Benchmark
+    public String onRequest() {
+        int i = nextIndex();
+        OfflinePlayer player = onlinePlayers[i % players];
+        if (changed(i)) {
+            cache.set(player.getUniqueId(), "money", cache.getUnits(player.getUniqueId(), "money") + 1);
+        }
+        return expansion.onRequest(player, PARAMS[i & (PARAMS.length - 1)]);
+    }
+
+    @Benchmark
+    public String onRequestBaseline() {
+        int i = nextIndex();
+        OfflinePlayer player = onlinePlayers[i % players];
+        if (changed(i)) {
+            legacyCache.merge(player.getUniqueId() + ":money", 0.0001, Double::sum);
+        }
+        return legacyOnRequest(player, PARAMS[i & (PARAMS.length - 1)]);
+    }
+
+    private int nextIndex() {
+        next = next == Integer.MAX_VALUE ? 0 : next + 1;
+        return next;
+    }
+
+    private boolean changed(int i) {
+        return changedPercent > 0 && i % 100 < changedPercent;
+    }
+
+    private String legacyOnRequest(OfflinePlayer player, String params) {
+        if (params.startsWith("balance_")) {
+            String currencyId = params.substring(8);
+            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+            if (currency == null)
+                return "N/A";
+            Double cached = legacyCache.get(player.getUniqueId() + ":" + currencyId);
+            return cached != null ? currency.getSymbol() + legacyFormat.format(cached) : "...";
+        }
+        if (params.startsWith("raw_balance_")) {
+            String currencyId = params.substring(12);
+            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+            if (currency == null)
+                return "0";
+            Double cached = legacyCache.get(player.getUniqueId() + ":" + currencyId);
+            return cached != null ? String.valueOf(cached.longValue()) : "0";
+        }
+        if (params.startsWith("formatted_")) {
+            String currencyId = params.substring(10);
+            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+            if (currency == null)
+                return "N/A";
+            Double cached = legacyCache.get(player.getUniqueId() + ":" + currencyId);
+            return cached != null ? legacyFormatCompact(cached) + currency.getSymbol() : "...";
+        }
+        if (params.startsWith("symbol_")) {
+            String currencyId = params.substring(7);
+            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+            return currency != null ? currency.getSymbol() : "";
+        }
+        if (params.startsWith("name_")) {
+            String currencyId = params.substring(5);
+            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+            return currency != null ? currency.getName() : "Unknown";
+        }
+        return null;
+    }
+
+    private String legacyFormatCompact(double value) {
+        if (value >= 1_000_000_000_000L) {
+            return legacyCompactFormat.format(value / 1_000_000_000_000L) + "T";
+        } else if (value >= 1_000_000_000) {
+            return legacyCompactFormat.format(value / 1_000_000_000) + "B";
+        } else if (value >= 1_000_000) {
+            return legacyCompactFormat.format(value / 1_000_000) + "M";
+        } else if (value >= 1_000) {
+            return legacyCompactFormat.format(value / 1_000) + "K";
+        }
+        return legacyCompactFormat.format(value);
+    }
+
+    private static OfflinePlayer onlinePlayer(UUID uuid) {
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(),
+                new Class<?>[] { OfflinePlayer.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getUniqueId":
+                            return uuid;
+                        case "isOnline":
+                            return true;
+                        case "hashCode":
+                            return uuid.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static <T> T allocate(Class<T> type) throws Exception {
+        Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        sun.misc.Unsafe unsafe = (sun.misc.Unsafe) unsafeField.get(null);
+        return type.cast(unsafe.allocateInstance(type));
+    }
+
+    private static Object get(Object target, String name) throws ReflectiveOperationException {
+        Field field = field(target.getClass(), name);
+        return field.get(target);
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        field(target.getClass(), name).set(target, value);
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Declared further up
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
@@ -1,10 +1,13 @@
 package com.agevate.creamcurrency.api;
 
 import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.cache.BalanceCache;
 import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.Money;
 import org.bukkit.OfflinePlayer;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -97,6 +100,20 @@ public class CreamCurrencyAPI {
         return getBalance(player.getUniqueId(), currencyId);
     }
 
+    /**
+     * Gets the balances of several players asynchronously. Cached balances are
+     * used directly and the rest are loaded together, which is much cheaper
+     * than one {@link #getBalance(UUID, String)} per player.
+     *
+     * @param playerUuids The UUIDs of the players.
+     * @param currencyId  The ID of the currency.
+     * @return A CompletableFuture containing the balance of each distinct
+     *         player.
+     */
+    public static CompletableFuture<Map<UUID, Double>> getBalances(Collection<UUID> playerUuids, String currencyId) {
+        return getPlugin().getPlayerDataDAO().getBalances(playerUuids, currencyId);
+    }
+
     /**
      * Sets the balance of a player asynchronously.
      *
@@ -171,6 +188,133 @@ public class CreamCurrencyAPI {
         return removeBalance(player.getUniqueId(), currencyId, amount);
     }
 
+    /**
+     * Moves money from one player to another asynchronously. The debit and the
+     * credit are applied together; nothing changes if the sender cannot cover
+     * the amount.
+     *
+     * @param fromUuid   The UUID of the paying player.
+     * @param toUuid     The UUID of the receiving player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The amount to transfer.
+     * @return A CompletableFuture containing true if the transfer succeeded,
+     *         false if insufficient funds or it failed.
+     */
+    public static CompletableFuture<Boolean> transfer(UUID fromUuid, UUID toUuid, String currencyId, double amount) {
+        return getPlugin().getPlayerDataDAO().transfer(fromUuid, toUuid, currencyId, amount)
+                .thenApply(result -> result.success());
+    }
+
+    /**
+     * Moves money from one player to another asynchronously.
+     *
+     * @param from       The paying player.
+     * @param to         The receiving player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The amount to transfer.
+     * @return A CompletableFuture containing true if the transfer succeeded,
+     *         false if insufficient funds or it failed.
+     */
+    public static CompletableFuture<Boolean> transfer(OfflinePlayer from, OfflinePlayer to, String currencyId,
+            double amount) {
+        return transfer(from.getUniqueId(), to.getUniqueId(), currencyId, amount);
+    }
+
+    /**
+     * Gets the exact balance of a player asynchronously.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param currencyId The ID of the currency.
+     * @return A CompletableFuture containing the balance, at the currency's
+     *         scale.
+     */
+    public static CompletableFuture<Money> getMoney(UUID playerUuid, String currencyId) {
+        int scale = scaleOf(currencyId);
+        return getPlugin().getPlayerDataDAO().getUnits(playerUuid, currencyId)
+                .thenApply(units -> Money.fromStorageUnits(units, scale));
+    }
+
+    /**
+     * Sets the exact balance of a player asynchronously.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The new balance.
+     * @return A CompletableFuture that completes when the operation is done.
+     */
+    public static CompletableFuture<Void> setBalance(UUID playerUuid, String currencyId, Money amount) {
+        return getPlugin().getPlayerDataDAO().setUnits(playerUuid, null, currencyId, amount.toStorageUnits());
+    }
+
+    /**
+     * Adds an exact amount to a player's balance asynchronously.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The amount to add.
+     * @return A CompletableFuture containing the new balance, or null if the
+     *         balance would overflow or the operation failed.
+     */
+    public static CompletableFuture<Money> addBalance(UUID playerUuid, String currencyId, Money amount) {
+        int scale = scaleOf(currencyId);
+        return getPlugin().getPlayerDataDAO().addUnits(playerUuid, currencyId, amount.toStorageUnits())
+                .thenApply(units -> units == BalanceCache.REJECTED ? null : Money.fromStorageUnits(units, scale));
+    }
+
+    /**
+     * Removes an exact amount from a player's balance asynchronously.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The amount to remove.
+     * @return A CompletableFuture containing the new balance, or null if
+     *         insufficient funds.
+     */
+    public static CompletableFuture<Money> removeBalance(UUID playerUuid, String currencyId, Money amount) {
+        int scale = scaleOf(currencyId);
+        return getPlugin().getPlayerDataDAO().removeUnits(playerUuid, currencyId, amount.toStorageUnits())
+                .thenApply(units -> units == BalanceCache.REJECTED ? null : Money.fromStorageUnits(units, scale));
+    }
+
+    /**
+     * Moves an exact amount from one player to another asynchronously.
+     *
+     * @param fromUuid   The UUID of the paying player.
+     * @param toUuid     The UUID of the receiving player.
+     * @param currencyId The ID of the currency.
+     * @param amount     The amount to transfer.
+     * @return A CompletableFuture containing true if the transfer succeeded,
+     *         false if insufficient funds or it failed.
+     */
+    public static CompletableFuture<Boolean> transfer(UUID fromUuid, UUID toUuid, String currencyId, Money amount) {
+        return getPlugin().getPlayerDataDAO().transferUnits(fromUuid, toUuid, currencyId, amount.toStorageUnits())
+                .thenApply(result -> result.success());
+    }
+
+    /**
+     * Gets a player's position on the leaderboard of a currency.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param currencyId The ID of the currency.
+     * @return The 1-based rank, or 0 if the player has no stored balance or the
+     *         leaderboard is still loading.
+     */
+    public static int getRank(UUID playerUuid, String currencyId) {
+        return getPlugin().getPlayerDataDAO().getRank(playerUuid, currencyId);
+    }
+
+    /**
+     * Gets a player's position on the leaderboard of a currency.
+     *
+     * @param player     The player.
+     * @param currencyId The ID of the currency.
+     * @return The 1-based rank, or 0 if the player has no stored balance or the
+     *         leaderboard is still loading.
+     */
+    public static int getRank(OfflinePlayer player, String currencyId) {
+        return getRank(player.getUniqueId(), currencyId);
+    }
+
     /**
      * Checks if a player has enough balance asynchronously.
      *
@@ -196,4 +340,9 @@ public class CreamCurrencyAPI {
     public static CompletableFuture<Boolean> hasEnough(OfflinePlayer player, String currencyId, double amount) {
         return hasEnough(player.getUniqueId(), currencyId, amount);
     }
+
+    private static int scaleOf(String currencyId) {
+        Currency currency = getCurrency(currencyId);
+        return currency != null ? currency.getScale() : Money.STORAGE_SCALE;
+    }
 }
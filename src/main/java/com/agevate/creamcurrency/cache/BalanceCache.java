@@ -1,44 +1,290 @@
 package com.agevate.creamcurrency.cache;
 
+import com.agevate.creamcurrency.currency.Money;
+
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Thread-safe in-memory cache for player balances.
  * Reduces database queries significantly for frequently accessed data.
+ * <p>
+ * Each player has one record holding the primitive balances of all currencies,
+ * indexed by a small interned currency index. Lookups never allocate, and
+ * evicting, loading or snapshotting a player only touches that player's record.
+ * <p>
+ * Balances are kept as exact storage units (see {@link Money#STORAGE_SCALE}),
+ * so repeated additions never drift. Missing entries are reported as
+ * {@link #ABSENT}; the double adapters report them as {@link Double#NaN}.
  */
 public class BalanceCache {
 
-    // Key format: "uuid:currencyId"
-    private final Map<String, Double> cache = new ConcurrentHashMap<>();
+    private static final int MAX_CURRENCIES = 1024;
+
+    // Returned when the key is not cached
+    public static final long ABSENT = Long.MIN_VALUE;
+    // Returned when a change was refused: insufficient funds or overflow
+    public static final long REJECTED = Long.MIN_VALUE + 1;
+
+    private final Map<UUID, PlayerBalances> players = new ConcurrentHashMap<>();
+    private final Map<String, Integer> currencyIndexes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> currencyIds = new AtomicReferenceArray<>(MAX_CURRENCIES);
+    private final AtomicInteger nextCurrencyIndex = new AtomicInteger();
+
+    /**
+     * Gets the interned index of a currency, assigning one on first use.
+     */
+    public int indexOf(String currencyId) {
+        Integer index = currencyIndexes.get(currencyId);
+        if (index != null) {
+            return index;
+        }
+        return currencyIndexes.computeIfAbsent(currencyId, id -> {
+            int next = nextCurrencyIndex.getAndIncrement();
+            if (next >= MAX_CURRENCIES) {
+                throw new IllegalStateException("Too many currencies cached: " + next);
+            }
+            currencyIds.set(next, id);
+            return next;
+        });
+    }
+
+    /**
+     * Gets a cached balance in storage units without allocating.
+     *
+     * @return the balance, or {@link #ABSENT} if the key is not cached.
+     */
+    public long getUnits(UUID uuid, String currencyId) {
+        return getUnits(uuid, indexOf(currencyId));
+    }
 
-    private String key(UUID uuid, String currencyId) {
-        return uuid.toString() + ":" + currencyId;
+    public long getUnits(UUID uuid, int currencyIndex) {
+        PlayerBalances balances = players.get(uuid);
+        return balances != null ? balances.get(currencyIndex) : ABSENT;
+    }
+
+    /**
+     * Gets a cached balance as a double without allocating.
+     *
+     * @return the balance, or NaN if the key is not cached.
+     */
+    public double getOrNaN(UUID uuid, String currencyId) {
+        return getOrNaN(uuid, indexOf(currencyId));
+    }
+
+    public double getOrNaN(UUID uuid, int currencyIndex) {
+        long units = getUnits(uuid, currencyIndex);
+        return units != ABSENT ? Money.storageUnitsToDouble(units) : Double.NaN;
     }
 
     public Double get(UUID uuid, String currencyId) {
-        return cache.get(key(uuid, currencyId));
+        double balance = getOrNaN(uuid, currencyId);
+        return Double.isNaN(balance) ? null : balance;
+    }
+
+    public void set(UUID uuid, String currencyId, long units) {
+        recordOf(uuid).put(indexOf(currencyId), units, false);
+    }
+
+    /**
+     * Stores the balance only if the key is not cached yet.
+     *
+     * @return the balance that is cached after the call.
+     */
+    public long putIfAbsent(UUID uuid, String currencyId, long units) {
+        return recordOf(uuid).put(indexOf(currencyId), units, true);
+    }
+
+    /**
+     * Atomically adds a delta to a cached balance.
+     *
+     * @return the new balance, {@link #ABSENT} if the key is not cached, or
+     *         {@link #REJECTED} if the result would overflow.
+     */
+    public long addIfPresent(UUID uuid, String currencyId, long delta) {
+        PlayerBalances balances = players.get(uuid);
+        return balances != null ? balances.add(indexOf(currencyId), delta) : ABSENT;
+    }
+
+    /**
+     * Atomically subtracts an amount from a cached balance if it is large enough.
+     *
+     * @return the new balance, {@link #ABSENT} if the key is not cached, or
+     *         {@link #REJECTED} if the balance is lower than the amount.
+     */
+    public long subtractIfSufficient(UUID uuid, String currencyId, long amount) {
+        PlayerBalances balances = players.get(uuid);
+        return balances != null ? balances.subtractIfSufficient(indexOf(currencyId), amount) : ABSENT;
     }
 
-    public void set(UUID uuid, String currencyId, double balance) {
-        cache.put(key(uuid, currencyId), balance);
+    /**
+     * Applies a balance the database committed for a change of {@code delta}.
+     * The cached value only moves forward if it is exactly the balance the
+     * change started from, or is simply kept if it already includes the
+     * change. Any other cached value means changes committed out of order or
+     * are still in flight, so the key is dropped and loaded again on the next
+     * read. An uncached key takes the committed balance, which keeps a load
+     * that read the row before the commit from caching the older value.
+     *
+     * @return true if the key holds the committed balance after the call.
+     */
+    public boolean applyCommitted(UUID uuid, String currencyId, long delta, long balance) {
+        return recordOf(uuid).applyCommitted(indexOf(currencyId), delta, balance);
     }
 
     public void invalidate(UUID uuid, String currencyId) {
-        cache.remove(key(uuid, currencyId));
+        PlayerBalances balances = players.get(uuid);
+        if (balances != null) {
+            balances.remove(indexOf(currencyId));
+        }
     }
 
     public void invalidatePlayer(UUID uuid) {
-        String prefix = uuid.toString() + ":";
-        cache.keySet().removeIf(k -> k.startsWith(prefix));
+        players.remove(uuid);
+    }
+
+    public boolean isPlayerCached(UUID uuid) {
+        return players.containsKey(uuid);
+    }
+
+    /**
+     * Copies all cached balances of a player.
+     *
+     * @return currency id to balance, empty if the player is not cached.
+     */
+    public Map<String, Double> snapshot(UUID uuid) {
+        PlayerBalances balances = players.get(uuid);
+        if (balances == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> result = new HashMap<>();
+        AtomicLongArray slots = balances.slots;
+        for (int i = 0; i < slots.length(); i++) {
+            long value = slots.get(i);
+            if (value != ABSENT) {
+                result.put(currencyIds.get(i), Money.storageUnitsToDouble(value));
+            }
+        }
+        return result;
     }
 
     public void clear() {
-        cache.clear();
+        players.clear();
     }
 
     public boolean contains(UUID uuid, String currencyId) {
-        return cache.containsKey(key(uuid, currencyId));
+        return getUnits(uuid, currencyId) != ABSENT;
+    }
+
+    private PlayerBalances recordOf(UUID uuid) {
+        PlayerBalances balances = players.get(uuid);
+        if (balances != null) {
+            return balances;
+        }
+        return players.computeIfAbsent(uuid, k -> new PlayerBalances(nextCurrencyIndex.get()));
+    }
+
+    /**
+     * Balances of a single player, one slot per currency index holding storage
+     * units ({@link #ABSENT} when absent). Reads are lock-free; writes
+     * synchronize on the record so growing the slot array cannot lose updates.
+     */
+    private static final class PlayerBalances {
+
+        private volatile AtomicLongArray slots;
+
+        PlayerBalances(int capacity) {
+            this.slots = emptySlots(Math.max(4, capacity));
+        }
+
+        long get(int index) {
+            AtomicLongArray current = slots;
+            return index < current.length() ? current.get(index) : ABSENT;
+        }
+
+        synchronized long put(int index, long value, boolean onlyIfAbsent) {
+            AtomicLongArray current = ensureCapacity(index);
+            long existing = current.get(index);
+            if (onlyIfAbsent && existing != ABSENT) {
+                return existing;
+            }
+            current.set(index, value);
+            return value;
+        }
+
+        synchronized long add(int index, long delta) {
+            long existing = get(index);
+            if (existing == ABSENT) {
+                return ABSENT;
+            }
+            long updated = existing + delta;
+            // Overflow, or a result that collides with a sentinel
+            if (((existing ^ updated) & (delta ^ updated)) < 0 || updated <= REJECTED) {
+                return REJECTED;
+            }
+            slots.set(index, updated);
+            return updated;
+        }
+
+        synchronized long subtractIfSufficient(int index, long amount) {
+            long existing = get(index);
+            if (existing == ABSENT) {
+                return ABSENT;
+            }
+            if (existing < amount) {
+                return REJECTED;
+            }
+            long updated = existing - amount;
+            slots.set(index, updated);
+            return updated;
+        }
+
+        synchronized boolean applyCommitted(int index, long delta, long balance) {
+            AtomicLongArray current = ensureCapacity(index);
+            long existing = current.get(index);
+            if (existing == balance) {
+                return true;
+            }
+            if (existing == ABSENT || existing == balance - delta) {
+                current.set(index, balance);
+                return true;
+            }
+            current.set(index, ABSENT);
+            return false;
+        }
+
+        synchronized void remove(int index) {
+            AtomicLongArray current = slots;
+            if (index < current.length()) {
+                current.set(index, ABSENT);
+            }
+        }
+
+        private AtomicLongArray ensureCapacity(int index) {
+            AtomicLongArray current = slots;
+            if (index < current.length()) {
+                return current;
+            }
+            AtomicLongArray grown = emptySlots(Math.max(index + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            slots = grown;
+            return grown;
+        }
+
+        private static AtomicLongArray emptySlots(int length) {
+            AtomicLongArray array = new AtomicLongArray(length);
+            for (int i = 0; i < length; i++) {
+                array.set(i, ABSENT);
+            }
+            return array;
+        }
     }
 }
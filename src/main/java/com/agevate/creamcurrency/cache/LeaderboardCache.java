@@ -0,0 +1,340 @@
+package com.agevate.creamcurrency.cache;
+
+import com.agevate.creamcurrency.currency.Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory mirror of all stored balances, ordered for leaderboards.
+ * <p>
+ * Each currency has an order-statistic tree (a size-augmented treap) sorted by
+ * balance descending, so a player's rank is found in O(log n) and a page in
+ * O(log n + page size) without SQL. The mirror is seeded from a full table
+ * scan and then kept current by every balance mutation. When other servers
+ * change the same table without telling this one, the owner rescans it
+ * periodically ({@link #beginRescan()}).
+ * <p>
+ * Each board also keeps the circulating supply and the number of holders
+ * (players with a positive balance) as running totals, adjusted by the
+ * difference every time a balance is recorded.
+ */
+public class LeaderboardCache {
+
+    private final Map<String, Board> boards = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // Boards a rescan is filling, null when none runs; updates go there too so the swap keeps them
+    private volatile Map<String, Board> rescanned;
+
+    public record Entry(UUID uuid, String name, double balance) {
+    }
+
+    /**
+     * Whether the initial scan has completed. Until then queries should go to
+     * the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Records the new balance of a player, in storage units.
+     *
+     * @param name the player name, or null to keep the known one.
+     */
+    public void update(UUID uuid, String name, String currencyId, long balance) {
+        Map<String, Board> next = rescanned;
+        if (next != null) {
+            next.computeIfAbsent(currencyId, id -> new Board()).put(uuid, name, balance, false);
+        }
+        boardOf(currencyId).put(uuid, name, balance, false);
+    }
+
+    /**
+     * Adds a row read by the initial scan. Ignored if a mutation already
+     * recorded a newer value for the player.
+     */
+    public void seed(UUID uuid, String name, String currencyId, long balance) {
+        boardOf(currencyId).put(uuid, name, balance, true);
+    }
+
+    /**
+     * Starts building new boards from a full scan, fed with
+     * {@link #rescan(UUID, String, String, long)}. The current boards keep
+     * answering until {@link #finishRescan()} replaces them. Updates recorded
+     * meanwhile go into both, and take precedence over the scanned rows.
+     */
+    public void beginRescan() {
+        rescanned = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a row read by a rescan, unless an update already recorded a newer
+     * value for the player.
+     */
+    public void rescan(UUID uuid, String name, String currencyId, long balance) {
+        Map<String, Board> next = rescanned;
+        if (next != null) {
+            next.computeIfAbsent(currencyId, id -> new Board()).put(uuid, name, balance, true);
+        }
+    }
+
+    /**
+     * Replaces the boards with the rescanned ones, one currency at a time.
+     * An update that races the swap may be lost; the next rescan corrects it.
+     */
+    public void finishRescan() {
+        Map<String, Board> next = rescanned;
+        rescanned = null;
+        if (next != null) {
+            boards.putAll(next);
+            boards.keySet().retainAll(next.keySet());
+        }
+    }
+
+    /**
+     * Drops a rescan that could not complete, keeping the current boards.
+     */
+    public void abortRescan() {
+        rescanned = null;
+    }
+
+    /**
+     * Gets a page of the leaderboard, highest balance first.
+     */
+    public List<Entry> page(String currencyId, int offset, int limit) {
+        Board board = boards.get(currencyId);
+        return board != null ? board.page(offset, limit) : Collections.emptyList();
+    }
+
+    /**
+     * Gets the 1-based position of a player, or 0 if they have no stored
+     * balance.
+     */
+    public int rank(UUID uuid, String currencyId) {
+        Board board = boards.get(currencyId);
+        return board != null ? board.rank(uuid) : 0;
+    }
+
+    public int size(String currencyId) {
+        Board board = boards.get(currencyId);
+        return board != null ? board.size() : 0;
+    }
+
+    /**
+     * Gets the sum of all balances of a currency, in storage units.
+     */
+    public long supply(String currencyId) {
+        Board board = boards.get(currencyId);
+        return board != null ? board.supply.sum() : 0L;
+    }
+
+    /**
+     * Gets the number of players with a positive balance of a currency.
+     */
+    public long holders(String currencyId) {
+        Board board = boards.get(currencyId);
+        return board != null ? board.holders.sum() : 0L;
+    }
+
+    /**
+     * Corrects the running totals of a currency by the given amounts, e.g. after
+     * comparing them with the database.
+     */
+    public void adjust(String currencyId, long supplyDelta, long holdersDelta) {
+        Board board = boardOf(currencyId);
+        board.supply.add(supplyDelta);
+        board.holders.add(holdersDelta);
+    }
+
+    public void clear() {
+        ready = false;
+        rescanned = null;
+        boards.clear();
+    }
+
+    private Board boardOf(String currencyId) {
+        Board board = boards.get(currencyId);
+        if (board != null) {
+            return board;
+        }
+        return boards.computeIfAbsent(currencyId, id -> new Board());
+    }
+
+    private static final class Node {
+        final UUID uuid;
+        String name;
+        long balance;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
+
+    /**
+     * Leaderboard of one currency. All access synchronizes on the board; every
+     * operation is O(log n) expected, so the lock is held only briefly.
+     */
+    private static final class Board {
+
+        private final Map<UUID, Node> nodes = new HashMap<>();
+        private Node root;
+        // Read without the board lock
+        final LongAdder supply = new LongAdder();
+        final LongAdder holders = new LongAdder();
+
+        synchronized void put(UUID uuid, String name, long balance, boolean onlyIfAbsent) {
+            Node node = nodes.get(uuid);
+            long previous = 0;
+            if (node != null) {
+                if (onlyIfAbsent) {
+                    return;
+                }
+                previous = node.balance;
+                root = remove(root, node);
+                node.left = null;
+                node.right = null;
+                node.size = 1;
+            } else {
+                node = new Node(uuid);
+                nodes.put(uuid, node);
+            }
+            if (name != null) {
+                node.name = name;
+            }
+            node.balance = balance;
+            supply.add(balance - previous);
+            if ((balance > 0) != (previous > 0)) {
+                holders.add(balance > 0 ? 1 : -1);
+            }
+            Node[] parts = split(root, node);
+            root = merge(merge(parts[0], node), parts[1]);
+        }
+
+        synchronized List<Entry> page(int offset, int limit) {
+            List<Entry> result = new ArrayList<>(Math.max(0, Math.min(limit, size(root) - offset)));
+            collect(root, Math.max(0, offset), limit, result);
+            return result;
+        }
+
+        // In-order walk that skips whole subtrees before the offset and stops once the page is full
+        private static void collect(Node t, int offset, int limit, List<Entry> out) {
+            if (t == null || out.size() >= limit) {
+                return;
+            }
+            int leftSize = size(t.left);
+            if (offset < leftSize) {
+                collect(t.left, offset, limit, out);
+            }
+            if (offset <= leftSize && out.size() < limit) {
+                out.add(new Entry(t.uuid, t.name, Money.storageUnitsToDouble(t.balance)));
+            }
+            if (out.size() < limit) {
+                collect(t.right, Math.max(0, offset - leftSize - 1), limit, out);
+            }
+        }
+
+        synchronized int rank(UUID uuid) {
+            Node target = nodes.get(uuid);
+            if (target == null) {
+                return 0;
+            }
+            int rank = 0;
+            Node t = root;
+            while (t != null) {
+                int c = compare(target, t);
+                if (c < 0) {
+                    t = t.left;
+                } else if (c > 0) {
+                    rank += size(t.left) + 1;
+                    t = t.right;
+                } else {
+                    return rank + size(t.left) + 1;
+                }
+            }
+            return 0;
+        }
+
+        synchronized int size() {
+            return size(root);
+        }
+
+        // Splits into nodes ordered before the key and the rest
+        private static Node[] split(Node t, Node key) {
+            if (t == null) {
+                return new Node[] { null, null };
+            }
+            if (compare(t, key) < 0) {
+                Node[] parts = split(t.right, key);
+                t.right = parts[0];
+                refresh(t);
+                parts[0] = t;
+                return parts;
+            }
+            Node[] parts = split(t.left, key);
+            t.left = parts[1];
+            refresh(t);
+            parts[1] = t;
+            return parts;
+        }
+
+        private static Node merge(Node a, Node b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                refresh(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            refresh(b);
+            return b;
+        }
+
+        private static Node remove(Node t, Node target) {
+            if (t == target) {
+                return merge(t.left, t.right);
+            }
+            if (compare(target, t) < 0) {
+                t.left = remove(t.left, target);
+            } else {
+                t.right = remove(t.right, target);
+            }
+            refresh(t);
+            return t;
+        }
+
+        // Highest balance first, ties broken by UUID so the order is total
+        private static int compare(Node a, Node b) {
+            int c = Long.compare(b.balance, a.balance);
+            return c != 0 ? c : a.uuid.compareTo(b.uuid);
+        }
+
+        private static int size(Node t) {
+            return t != null ? t.size : 0;
+        }
+
+        private static void refresh(Node t) {
+            t.size = 1 + size(t.left) + size(t.right);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.agevate.creamcurrency.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight loading for cache misses, with a backoff after failures.
+ * <p>
+ * Concurrent misses for the same key share one load: the first caller starts
+ * it and later ones get the same future until it completes. After a failed
+ * load, {@link #isBackingOff()} is true for a while so callers can skip the
+ * database; the backoff doubles with each failure in a row, up to a limit,
+ * and is reset by the next successful load.
+ *
+ * @param <K> the key of a load.
+ * @param <V> the loaded value.
+ */
+public class LoadCoalescer<K, V> {
+
+    // Failures in a row beyond this no longer lengthen the backoff
+    private static final int MAX_DOUBLINGS = 16;
+
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final LongSupplier clock;
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long backoffUntil;
+
+    public LoadCoalescer(long baseBackoffMs, long maxBackoffMs) {
+        this(baseBackoffMs, maxBackoffMs, System::currentTimeMillis);
+    }
+
+    public LoadCoalescer(long baseBackoffMs, long maxBackoffMs, LongSupplier clock) {
+        this.baseBackoffMs = Math.max(0, baseBackoffMs);
+        this.maxBackoffMs = Math.max(0, maxBackoffMs);
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the load in flight for a key, or starts one with {@code loader} if
+     * there is none. The key is released before the returned future completes,
+     * so a caller arriving after that starts a new load (or, usually, finds
+     * the value cached).
+     */
+    public CompletableFuture<V> load(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = join(key, load);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        CompletableFuture<V> started;
+        try {
+            started = loader.get();
+        } catch (RuntimeException e) {
+            finish(key, load, null, e);
+            return load;
+        }
+        started.whenComplete((value, error) -> finish(key, load, value, error));
+        return load;
+    }
+
+    /**
+     * Claims a key for a load the caller runs itself, e.g. as part of a batch.
+     * The caller must pass the same future to {@link #finish} once done.
+     *
+     * @return the load already in flight for the key, or null if the key is
+     *         now claimed with {@code load}.
+     */
+    public CompletableFuture<V> join(K key, CompletableFuture<V> load) {
+        return loading.putIfAbsent(key, load);
+    }
+
+    /**
+     * Releases a key claimed with {@link #join} and completes its load.
+     *
+     * @param error the failure, or null if the load succeeded.
+     */
+    public void finish(K key, CompletableFuture<V> load, V value, Throwable error) {
+        // Removed before completing, so a caller arriving later sees the cache instead
+        loading.remove(key, load);
+        if (error != null) {
+            load.completeExceptionally(error);
+        } else {
+            load.complete(value);
+        }
+    }
+
+    /**
+     * Whether failed loads asked callers to keep away from the database.
+     */
+    public boolean isBackingOff() {
+        return clock.getAsLong() < backoffUntil;
+    }
+
+    /**
+     * Records a successful load, ending any backoff streak.
+     */
+    public void succeeded() {
+        failures.set(0);
+    }
+
+    /**
+     * Records a failed load and starts (or lengthens) the backoff.
+     */
+    public void failed() {
+        int streak = Math.min(failures.incrementAndGet(), MAX_DOUBLINGS);
+        backoffUntil = clock.getAsLong() + Math.min(maxBackoffMs, baseBackoffMs << (streak - 1));
+    }
+
+    /**
+     * Gets the number of keys with a load in flight.
+     */
+    public int inFlight() {
+        return loading.size();
+    }
+}
@@ -1,20 +1,37 @@
 package com.agevate.creamcurrency.command;
 
 import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.Money;
+import com.agevate.creamcurrency.database.TransactionLedger;
 import com.agevate.creamcurrency.utils.TextUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Admin command for CreamCurrency management.
  */
 public class CreamCurrencyCommand implements CommandExecutor, TabCompleter {
 
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter REBUILD_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
     private final CreamCurrency plugin;
 
     public CreamCurrencyCommand(CreamCurrency plugin) {
@@ -59,6 +76,12 @@ public class CreamCurrencyCommand implements CommandExecutor, TabCompleter {
                             "&eKullanım: /creamcurrency cache clear")));
                 }
                 break;
+            case "history":
+                handleHistory(sender, args);
+                break;
+            case "rebuild":
+                handleRebuild(sender, args);
+                break;
             default:
                 sendHelp(sender);
                 break;
@@ -67,6 +90,142 @@ public class CreamCurrencyCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private void handleHistory(CommandSender sender, String[] args) {
+        TransactionLedger ledger = plugin.getPlayerDataDAO().getLedger();
+        if (ledger == null) {
+            sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.history-disabled",
+                    "&cİşlem geçmişi devre dışı.")));
+            return;
+        }
+        if (args.length < 2) {
+            sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.history-usage",
+                    "&eKullanım: /creamcurrency history <oyuncu> [sayfa]")));
+            return;
+        }
+
+        int page = 1;
+        if (args.length > 2) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.history-usage",
+                        "&eKullanım: /creamcurrency history <oyuncu> [sayfa]")));
+                return;
+            }
+        }
+
+        OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
+        UUID uuid = target.getUniqueId();
+        String targetName = target.getName() != null ? target.getName() : args[1];
+        int pageSize = Math.max(1, plugin.getConfig().getInt("logging.ledger.page-size", 10));
+        int finalPage = page;
+
+        ledger.getHistory(uuid, page, pageSize).thenAccept(entries -> Bukkit.getScheduler().runTask(plugin, () -> {
+            sender.sendMessage(TextUtils.colorize(plugin.getConfig()
+                    .getString("messages.history-header", "&e&l%player% &7işlem geçmişi &8(sayfa %page%)")
+                    .replace("%player%", targetName)
+                    .replace("%page%", String.valueOf(finalPage))));
+            if (entries.isEmpty()) {
+                sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.history-empty",
+                        "&7Kayıt bulunamadı.")));
+                return;
+            }
+            String format = plugin.getConfig().getString("messages.history-entry",
+                    "&8%time% &6%type% &f%amount% %currency% &7%direction% %other% &8(%balance%)");
+            for (TransactionLedger.Transaction entry : entries) {
+                sender.sendMessage(TextUtils.colorize(formatHistoryEntry(format, uuid, entry)));
+            }
+        }));
+    }
+
+    private void handleRebuild(CommandSender sender, String[] args) {
+        if (plugin.getPlayerDataDAO().getLedger() == null) {
+            sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.history-disabled",
+                    "&cİşlem geçmişi devre dışı.")));
+            return;
+        }
+
+        long before = Long.MAX_VALUE;
+        if (args.length > 1) {
+            Long from = args.length > 2 && args[1].equalsIgnoreCase("--from")
+                    ? parseTime(String.join(" ", Arrays.copyOfRange(args, 2, args.length)))
+                    : null;
+            if (from == null) {
+                sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.rebuild-usage",
+                        "&eKullanım: /creamcurrency rebuild [--from <yyyy-MM-dd HH:mm>]")));
+                return;
+            }
+            before = from;
+        }
+
+        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.rebuild-started",
+                "&eBakiyeler işlem geçmişinden yeniden oluşturuluyor...")));
+        plugin.getPlayerDataDAO().rebuildBalances(before).whenComplete((result, error) ->
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (error != null) {
+                        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.rebuild-failed",
+                                "&cBakiyeler yeniden oluşturulamadı, konsolu kontrol edin.")));
+                    } else if (result == null) {
+                        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString(
+                                "messages.rebuild-no-snapshot", "&cBu zamandan önce alınmış bir anlık görüntü yok.")));
+                    } else {
+                        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.rebuild-done",
+                                "&a%snapshot% tarihli anlık görüntü ve %transactions% işlemden %balances% bakiye yeniden oluşturuldu. &7(%time%ms)")
+                                .replace("%snapshot%", REBUILD_TIME.format(LocalDateTime.ofInstant(
+                                        Instant.ofEpochMilli(result.snapshotTime()), ZoneId.systemDefault())))
+                                .replace("%transactions%", String.valueOf(result.transactions()))
+                                .replace("%balances%", String.valueOf(result.balances()))
+                                .replace("%time%", String.valueOf(result.millis()))));
+                    }
+                }));
+    }
+
+    /**
+     * Parses {@code yyyy-MM-dd HH:mm}, {@code yyyy-MM-ddTHH:mm} or
+     * {@code yyyy-MM-dd} (start of day) in the server time zone.
+     */
+    private static Long parseTime(String text) {
+        try {
+            LocalDateTime time;
+            if (text.length() == 10) {
+                time = LocalDate.parse(text).atStartOfDay();
+            } else if (text.indexOf('T') > 0) {
+                time = LocalDateTime.parse(text);
+            } else {
+                time = LocalDateTime.parse(text, REBUILD_TIME);
+            }
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private String formatHistoryEntry(String format, UUID uuid, TransactionLedger.Transaction entry) {
+        boolean outgoing = uuid.equals(entry.from());
+        UUID other = outgoing ? entry.to() : entry.from();
+        Long balance = outgoing ? entry.fromBalance() : entry.toBalance();
+        String otherName = "-";
+        if (other != null) {
+            String name = Bukkit.getOfflinePlayer(other).getName();
+            otherName = name != null ? name : other.toString();
+        }
+        return format
+                .replace("%time%", HISTORY_TIME.format(Instant.ofEpochMilli(entry.timestamp())))
+                .replace("%type%", entry.type())
+                .replace("%amount%", formatUnits(entry.currencyId(), outgoing ? -entry.amount() : entry.amount()))
+                .replace("%currency%", entry.currencyId())
+                .replace("%direction%", outgoing ? "->" : "<-")
+                .replace("%other%", otherName + (entry.note() != null ? " [" + entry.note() + "]" : ""))
+                .replace("%balance%", balance != null ? formatUnits(entry.currencyId(), balance) : "?");
+    }
+
+    private String formatUnits(String currencyId, long units) {
+        Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+        return currency != null
+                ? currency.format(currency.fromStorageUnits(units))
+                : String.valueOf(Money.storageUnitsToDouble(units));
+    }
+
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.creamcurrency-admin-header",
                 "&e&lCreamCurrency &8- &7Admin Komutları")));
@@ -74,6 +233,10 @@ public class CreamCurrencyCommand implements CommandExecutor, TabCompleter {
                 "&6/creamcurrency reload &8- &7Yapılandırmayı yenile")));
         sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.creamcurrency-cache-help",
                 "&6/creamcurrency cache clear &8- &7Bakiye önbelleğini temizle")));
+        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.creamcurrency-history-help",
+                "&6/creamcurrency history <oyuncu> [sayfa] &8- &7İşlem geçmişini göster")));
+        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.creamcurrency-rebuild-help",
+                "&6/creamcurrency rebuild [--from <zaman>] &8- &7Bakiyeleri işlem geçmişinden yeniden oluştur")));
     }
 
     @Override
@@ -82,11 +245,17 @@ public class CreamCurrencyCommand implements CommandExecutor, TabCompleter {
             return Collections.emptyList();
         }
         if (args.length == 1) {
-            return List.of("reload", "cache");
+            return List.of("reload", "cache", "history", "rebuild");
         }
         if (args.length == 2 && args[0].equalsIgnoreCase("cache")) {
             return List.of("clear");
         }
+        if (args.length == 2 && args[0].equalsIgnoreCase("history")) {
+            return null;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("rebuild")) {
+            return List.of("--from");
+        }
         return Collections.emptyList();
     }
 }
@@ -1,8 +1,9 @@
 package com.agevate.creamcurrency.command;
 
 import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.cache.BalanceCache;
 import com.agevate.creamcurrency.currency.Currency;
-import com.agevate.creamcurrency.utils.NumberUtils;
+import com.agevate.creamcurrency.currency.Money;
 import com.agevate.creamcurrency.utils.TextUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -181,16 +182,16 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[nextArg]);
+            amount = currency.parse(args[nextArg]);
         } catch (NumberFormatException e) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
                     "&cGeçersiz miktar.")));
             return;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.amount-positive",
                     "&cMiktar pozitif olmalıdır.")));
             return;
@@ -205,71 +206,72 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
                 return;
             }
 
-            plugin.getPlayerDataDAO().removeBalance(player.getUniqueId(), finalCurrency.getId(), amount)
-                    .thenAccept(newBalance -> {
-                        if (newBalance < 0) {
+            plugin.getPlayerDataDAO()
+                    .transferUnits(player.getUniqueId(), target.getUniqueId(), finalCurrency.getId(),
+                            amount.toStorageUnits())
+                    .thenAccept(result -> {
+                        if (!result.success()) {
                             player.sendMessage(TextUtils.colorize(plugin.getConfig()
                                     .getString("messages.insufficient-funds", "&cInsufficient funds.")));
                             return;
                         }
 
-                        plugin.getPlayerDataDAO().addBalance(target.getUniqueId(), finalCurrency.getId(), amount)
-                                .thenAccept(targetNewBalance -> {
-                                    // Log the payment
-                                    plugin.getTransactionLogger().logPayment(
-                                            player.getUniqueId(), player.getName(),
-                                            target.getUniqueId(),
-                                            target.getName() != null ? target.getName() : "Unknown",
-                                            finalCurrency.getId(), amount);
-
-                                    String formattedAmount = finalCurrency.format(amount);
-                                    String targetDispName = target.getName() != null ? target.getName() : "Unknown";
-                                    String senderName = player.getName();
-
-                                    Bukkit.getScheduler().runTask(plugin, () -> {
-                                        // 1. Notify Sender
-                                        String sentChat = plugin.getConfig().getString("messages.pay.sent-chat",
-                                                plugin.getConfig().getString("messages.pay-sent",
-                                                        "&aSent %amount% to %player%."))
-                                                .replace("%amount%", formattedAmount)
-                                                .replace("%player%", targetDispName);
-                                        player.sendMessage(TextUtils.colorize(sentChat));
-
-                                        String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
-                                                "");
-                                        if (sentBar != null && !sentBar.isBlank()) {
-                                            TextUtils.sendActionBar(player, sentBar.replace("%amount%", formattedAmount)
-                                                    .replace("%player%", targetDispName));
-                                        }
-
-                                        String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
-                                        TextUtils.playSound(player, sentSound);
-
-                                        // 2. Notify Receiver
-                                        Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
-                                        if (targetPlayer != null && targetPlayer.isOnline()) {
-                                            String receivedChat = plugin
-                                                    .getConfig().getString("messages.pay.received-chat",
-                                                            plugin.getConfig().getString("messages.pay-received",
-                                                                    "&aReceived %amount% from %player%."))
-                                                    .replace("%amount%", formattedAmount)
-                                                    .replace("%player%", senderName);
-                                            targetPlayer.sendMessage(TextUtils.colorize(receivedChat));
-
-                                            String receivedBar = plugin.getConfig()
-                                                    .getString("messages.pay.received-actionbar", "");
-                                            if (receivedBar != null && !receivedBar.isBlank()) {
-                                                TextUtils.sendActionBar(targetPlayer,
-                                                        receivedBar.replace("%amount%", formattedAmount)
-                                                                .replace("%player%", senderName));
-                                            }
-
-                                            String receivedSound = plugin.getConfig()
-                                                    .getString("messages.pay.sounds.received", "");
-                                            TextUtils.playSound(targetPlayer, receivedSound);
-                                        }
-                                    });
-                                });
+                        // Log the payment
+                        plugin.getTransactionLogger().logPayment(
+                                player.getUniqueId(), player.getName(),
+                                target.getUniqueId(),
+                                target.getName() != null ? target.getName() : "Unknown",
+                                finalCurrency.getId(), amount.toDouble(),
+                                Money.storageUnitsToDouble(result.fromBalance()),
+                                Money.storageUnitsToDouble(result.toBalance()));
+
+                        String formattedAmount = finalCurrency.format(amount);
+                        String targetDispName = target.getName() != null ? target.getName() : "Unknown";
+                        String senderName = player.getName();
+
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            // 1. Notify Sender
+                            String sentChat = plugin.getConfig().getString("messages.pay.sent-chat",
+                                    plugin.getConfig().getString("messages.pay-sent",
+                                            "&aSent %amount% to %player%."))
+                                    .replace("%amount%", formattedAmount)
+                                    .replace("%player%", targetDispName);
+                            player.sendMessage(TextUtils.colorize(sentChat));
+
+                            String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
+                                    "");
+                            if (sentBar != null && !sentBar.isBlank()) {
+                                TextUtils.sendActionBar(player, sentBar.replace("%amount%", formattedAmount)
+                                        .replace("%player%", targetDispName));
+                            }
+
+                            String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
+                            TextUtils.playSound(player, sentSound);
+
+                            // 2. Notify Receiver
+                            Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
+                            if (targetPlayer != null && targetPlayer.isOnline()) {
+                                String receivedChat = plugin
+                                        .getConfig().getString("messages.pay.received-chat",
+                                                plugin.getConfig().getString("messages.pay-received",
+                                                        "&aReceived %amount% from %player%."))
+                                        .replace("%amount%", formattedAmount)
+                                        .replace("%player%", senderName);
+                                targetPlayer.sendMessage(TextUtils.colorize(receivedChat));
+
+                                String receivedBar = plugin.getConfig()
+                                        .getString("messages.pay.received-actionbar", "");
+                                if (receivedBar != null && !receivedBar.isBlank()) {
+                                    TextUtils.sendActionBar(targetPlayer,
+                                            receivedBar.replace("%amount%", formattedAmount)
+                                                    .replace("%player%", senderName));
+                                }
+
+                                String receivedSound = plugin.getConfig()
+                                        .getString("messages.pay.sounds.received", "");
+                                TextUtils.playSound(targetPlayer, receivedSound);
+                            }
+                        });
                     });
         });
     }
@@ -330,15 +332,12 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
                                     .replace("%currency%", finalCurrency.getName())
                                     .replace("%page%", String.valueOf(finalPage));
 
-                            // Total Supply & Player Count (Approximated or separate query?)
-                            // For now just Total Supply as requested
+                            // Total supply and holder count, both from running totals
                             sender.sendMessage(TextUtils.colorize(header));
                             sender.sendMessage(
                                     TextUtils.colorize(plugin.getCommandConfig().getTopTotal()
-                                            .replace("%amount%", finalCurrency.format(totalBalance))));
-                            // To do strictly "Player Count" I'd need separate count query.
-                            // I will assume for now just total balance is enough or add a quick count query
-                            // if strictly needed.
+                                            .replace("%amount%", finalCurrency.format(totalBalance))
+                                            .replace("%holders%", formatHolders(finalCurrency))));
 
                             if (topList.isEmpty()) {
                                 sender.sendMessage(TextUtils.colorize(plugin.getCommandConfig().getTopEmpty()));
@@ -397,24 +396,30 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[2]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[3]);
+            amount = currency.parse(args[3]);
         } catch (NumberFormatException e) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
                     "&cGeçersiz miktar.")));
             return;
         }
 
-        plugin.getPlayerDataDAO().addBalance(target.getUniqueId(), currency.getId(), amount)
-                .thenAccept(newBalance -> {
+        plugin.getPlayerDataDAO().addUnits(target.getUniqueId(), currency.getId(), amount.toStorageUnits())
+                .thenAccept(units -> {
+                    if (units == BalanceCache.REJECTED) {
+                        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
+                                "&cGeçersiz miktar.")));
+                        return;
+                    }
+                    Money newBalance = currency.fromStorageUnits(units);
                     sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.admin-give-success",
                             "&a%player% kişisine %amount% verildi. &7(Yeni: %new_balance%)")
                             .replace("%player%", target.getName() != null ? target.getName() : "Unknown")
                             .replace("%amount%", currency.format(amount))
                             .replace("%new_balance%", currency.format(newBalance))));
                     plugin.getTransactionLogger().logAdminGive(sender.getName(), target.getUniqueId(), target.getName(),
-                            currency.getId(), amount, newBalance);
+                            currency.getId(), amount.toDouble(), newBalance.toDouble());
                 });
     }
 
@@ -438,9 +443,9 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[2]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[3]);
+            amount = currency.parse(args[3]);
         } catch (NumberFormatException e) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
                     "&cGeçersiz miktar.")));
@@ -449,14 +454,14 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
 
         // Need old balance for log?
         plugin.getPlayerDataDAO().getBalance(target.getUniqueId(), currency.getId()).thenAccept(oldBal -> {
-            plugin.getPlayerDataDAO().setBalance(target.getUniqueId(), currency.getId(), amount)
+            plugin.getPlayerDataDAO().setUnits(target.getUniqueId(), null, currency.getId(), amount.toStorageUnits())
                     .thenRun(() -> {
                         sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.admin-set-success",
                                 "&a%player% kişisinin bakiyesi %amount% yapıldı.")
                                 .replace("%player%", target.getName() != null ? target.getName() : "Unknown")
                                 .replace("%amount%", currency.format(amount))));
                         plugin.getTransactionLogger().logAdminSet(sender.getName(), target.getUniqueId(),
-                                target.getName(), currency.getId(), oldBal, amount);
+                                target.getName(), currency.getId(), oldBal, amount.toDouble());
                     });
         });
     }
@@ -482,19 +487,20 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[2]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[3]);
+            amount = currency.parse(args[3]);
         } catch (NumberFormatException e) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
                     "&cGeçersiz miktar.")));
             return;
         }
 
-        plugin.getPlayerDataDAO().getBalance(target.getUniqueId(), currency.getId())
+        plugin.getPlayerDataDAO().getUnits(target.getUniqueId(), currency.getId())
                 .thenAccept(current -> {
-                    double newBalance = Math.max(0, current - amount);
-                    plugin.getPlayerDataDAO().setBalance(target.getUniqueId(), currency.getId(), newBalance)
+                    long newUnits = Math.max(0, current - amount.toStorageUnits());
+                    Money newBalance = currency.fromStorageUnits(newUnits);
+                    plugin.getPlayerDataDAO().setUnits(target.getUniqueId(), null, currency.getId(), newUnits)
                             .thenRun(() -> {
                                 sender.sendMessage(TextUtils.colorize(plugin.getConfig()
                                         .getString("messages.admin-remove-success",
@@ -503,7 +509,7 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
                                         .replace("%amount%", currency.format(amount))
                                         .replace("%new_balance%", currency.format(newBalance))));
                                 plugin.getTransactionLogger().logAdminRemove(sender.getName(), target.getUniqueId(),
-                                        target.getName(), currency.getId(), amount, newBalance);
+                                        target.getName(), currency.getId(), amount.toDouble(), newBalance.toDouble());
                             });
                 });
     }
@@ -582,4 +588,9 @@ public class CurrencyCommand implements CommandExecutor, TabCompleter {
         String q = query.toLowerCase();
         return list.stream().filter(s -> s.toLowerCase().startsWith(q)).collect(Collectors.toList());
     }
+
+    private String formatHolders(Currency currency) {
+        long holders = plugin.getPlayerDataDAO().getHolderCount(currency.getId());
+        return holders >= 0 ? String.valueOf(holders) : "-";
+    }
 }
@@ -1,10 +1,11 @@
 package com.agevate.creamcurrency.command;
 
 import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.cache.BalanceCache;
 import com.agevate.creamcurrency.config.CommandConfig;
 import com.agevate.creamcurrency.config.CommandConfig.SubCommand;
 import com.agevate.creamcurrency.currency.Currency;
-import com.agevate.creamcurrency.utils.NumberUtils;
+import com.agevate.creamcurrency.currency.Money;
 import com.agevate.creamcurrency.utils.TextUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -171,16 +172,16 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[2]);
+            amount = currency.parse(args[2]);
         } catch (NumberFormatException e) {
             sender.sendMessage(
                     TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount", "&cGeçersiz miktar.")));
             return;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             sender.sendMessage(TextUtils
                     .colorize(plugin.getConfig().getString("messages.amount-positive", "&cMiktar pozitif olmalıdır.")));
             return;
@@ -196,71 +197,72 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
                 return;
             }
 
-            plugin.getPlayerDataDAO().removeBalance(player.getUniqueId(), currency.getId(), amount)
-                    .thenAccept(newSenderBalance -> {
-                        if (newSenderBalance < 0) {
+            plugin.getPlayerDataDAO()
+                    .transferUnits(player.getUniqueId(), target.getUniqueId(), currency.getId(),
+                            amount.toStorageUnits())
+                    .thenAccept(result -> {
+                        if (!result.success()) {
                             sender.sendMessage(TextUtils.colorize(
                                     plugin.getConfig().getString("messages.insufficient-funds",
                                             "&cInsufficient funds.")));
                             return;
                         }
 
-                        plugin.getPlayerDataDAO().addBalance(target.getUniqueId(), currency.getId(), amount)
-                                .thenAccept(newTargetBalance -> {
-                                    // Log the payment
-                                    plugin.getTransactionLogger().logPayment(
-                                            player.getUniqueId(), player.getName(),
-                                            target.getUniqueId(), targetName,
-                                            currency.getId(), amount);
-
-                                    String formattedAmount = currency.format(amount);
-
-                                    // Run on main thread for proper message delivery
-                                    Bukkit.getScheduler().runTask(plugin, () -> {
-                                        // 1. Notify Sender
-                                        String sentChat = plugin.getConfig()
-                                                .getString("messages.pay.sent-chat", "&aSent %amount% to %player%.")
-                                                .replace("%amount%", formattedAmount)
-                                                .replace("%player%", targetName);
-                                        player.sendMessage(TextUtils.colorize(sentChat));
-
-                                        String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
-                                                "");
-                                        if (sentBar != null && !sentBar.isBlank()) {
-                                            TextUtils.sendActionBar(player, sentBar
-                                                    .replace("%amount%", formattedAmount)
-                                                    .replace("%player%", targetName));
-                                        }
-
-                                        String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
-                                        TextUtils.playSound(player, sentSound);
-
-                                        // Notify target if online
-                                        Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
-                                        if (targetPlayer != null && targetPlayer.isOnline()) {
-                                            String senderName = player.getName();
-
-                                            String receivedChat = plugin.getConfig().getString(
-                                                    "messages.pay.received-chat",
-                                                    "&aReceived %amount% from %player%.");
-                                            targetPlayer.sendMessage(TextUtils.colorize(receivedChat
-                                                    .replace("%amount%", formattedAmount)
-                                                    .replace("%player%", senderName)));
-
-                                            String receivedBar = plugin.getConfig()
-                                                    .getString("messages.pay.received-actionbar", "");
-                                            if (receivedBar != null && !receivedBar.isBlank()) {
-                                                TextUtils.sendActionBar(targetPlayer, receivedBar
-                                                        .replace("%amount%", formattedAmount)
-                                                        .replace("%player%", senderName));
-                                            }
-
-                                            String receivedSound = plugin.getConfig()
-                                                    .getString("messages.pay.sounds.received", "");
-                                            TextUtils.playSound(targetPlayer, receivedSound);
-                                        }
-                                    });
-                                });
+                        // Log the payment
+                        plugin.getTransactionLogger().logPayment(
+                                player.getUniqueId(), player.getName(),
+                                target.getUniqueId(), targetName,
+                                currency.getId(), amount.toDouble(),
+                                Money.storageUnitsToDouble(result.fromBalance()),
+                                Money.storageUnitsToDouble(result.toBalance()));
+
+                        String formattedAmount = currency.format(amount);
+
+                        // Run on main thread for proper message delivery
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            // 1. Notify Sender
+                            String sentChat = plugin.getConfig()
+                                    .getString("messages.pay.sent-chat", "&aSent %amount% to %player%.")
+                                    .replace("%amount%", formattedAmount)
+                                    .replace("%player%", targetName);
+                            player.sendMessage(TextUtils.colorize(sentChat));
+
+                            String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
+                                    "");
+                            if (sentBar != null && !sentBar.isBlank()) {
+                                TextUtils.sendActionBar(player, sentBar
+                                        .replace("%amount%", formattedAmount)
+                                        .replace("%player%", targetName));
+                            }
+
+                            String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
+                            TextUtils.playSound(player, sentSound);
+
+                            // Notify target if online
+                            Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
+                            if (targetPlayer != null && targetPlayer.isOnline()) {
+                                String senderName = player.getName();
+
+                                String receivedChat = plugin.getConfig().getString(
+                                        "messages.pay.received-chat",
+                                        "&aReceived %amount% from %player%.");
+                                targetPlayer.sendMessage(TextUtils.colorize(receivedChat
+                                        .replace("%amount%", formattedAmount)
+                                        .replace("%player%", senderName)));
+
+                                String receivedBar = plugin.getConfig()
+                                        .getString("messages.pay.received-actionbar", "");
+                                if (receivedBar != null && !receivedBar.isBlank()) {
+                                    TextUtils.sendActionBar(targetPlayer, receivedBar
+                                            .replace("%amount%", formattedAmount)
+                                            .replace("%player%", senderName));
+                                }
+
+                                String receivedSound = plugin.getConfig()
+                                        .getString("messages.pay.sounds.received", "");
+                                TextUtils.playSound(targetPlayer, receivedSound);
+                            }
+                        });
                     });
         });
     }
@@ -302,7 +304,8 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
 
                     sender.sendMessage(TextUtils.colorize(header));
                     sender.sendMessage(TextUtils.colorize(cmdConfig.getTopTotal()
-                            .replace("%amount%", currency.format(total))));
+                            .replace("%amount%", currency.format(total))
+                            .replace("%holders%", formatHolders(currency))));
 
                     if (topList.isEmpty()) {
                         sender.sendMessage(TextUtils.colorize(cmdConfig.getTopEmpty()));
@@ -351,22 +354,28 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[2]);
+            amount = currency.parse(args[2]);
         } catch (NumberFormatException e) {
             sender.sendMessage(
                     TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount", "&cGeçersiz miktar.")));
             return;
         }
 
-        plugin.getPlayerDataDAO().addBalance(target.getUniqueId(), currency.getId(), amount)
-                .thenAccept(newBalance -> {
+        plugin.getPlayerDataDAO().addUnits(target.getUniqueId(), currency.getId(), amount.toStorageUnits())
+                .thenAccept(units -> {
+                    if (units == BalanceCache.REJECTED) {
+                        sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
+                                "&cGeçersiz miktar.")));
+                        return;
+                    }
+                    Money newBalance = currency.fromStorageUnits(units);
                     // Log the admin give
                     plugin.getTransactionLogger().logAdminGive(
                             sender.getName(), target.getUniqueId(),
                             target.getName() != null ? target.getName() : "Unknown",
-                            currency.getId(), amount, newBalance);
+                            currency.getId(), amount.toDouble(), newBalance.toDouble());
 
                     sender.sendMessage(TextUtils.colorize(plugin.getConfig()
                             .getString("messages.admin-give-success",
@@ -392,16 +401,16 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[2]);
+            amount = currency.parse(args[2]);
         } catch (NumberFormatException e) {
             sender.sendMessage(
                     TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount", "&cGeçersiz miktar.")));
             return;
         }
 
-        plugin.getPlayerDataDAO().setBalance(target.getUniqueId(), currency.getId(), amount)
+        plugin.getPlayerDataDAO().setUnits(target.getUniqueId(), null, currency.getId(), amount.toStorageUnits())
                 .thenRun(() -> {
                     sender.sendMessage(TextUtils.colorize(plugin.getConfig()
                             .getString("messages.admin-set-success", "&a%player% kişisinin bakiyesi %amount% yapıldı.")
@@ -425,25 +434,26 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
         }
 
         OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[2]);
+            amount = currency.parse(args[2]);
         } catch (NumberFormatException e) {
             sender.sendMessage(
                     TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount", "&cGeçersiz miktar.")));
             return;
         }
 
-        plugin.getPlayerDataDAO().getBalance(target.getUniqueId(), currency.getId())
+        plugin.getPlayerDataDAO().getUnits(target.getUniqueId(), currency.getId())
                 .thenAccept(current -> {
-                    double newBalance = Math.max(0, current - amount);
-                    plugin.getPlayerDataDAO().setBalance(target.getUniqueId(), currency.getId(), newBalance)
+                    long newUnits = Math.max(0, current - amount.toStorageUnits());
+                    Money newBalance = currency.fromStorageUnits(newUnits);
+                    plugin.getPlayerDataDAO().setUnits(target.getUniqueId(), null, currency.getId(), newUnits)
                             .thenRun(() -> {
                                 // Log the admin remove
                                 plugin.getTransactionLogger().logAdminRemove(
                                         sender.getName(), target.getUniqueId(),
                                         target.getName() != null ? target.getName() : "Unknown",
-                                        currency.getId(), amount, newBalance);
+                                        currency.getId(), amount.toDouble(), newBalance.toDouble());
 
                                 sender.sendMessage(TextUtils.colorize(plugin.getConfig()
                                         .getString("messages.admin-remove-success",
@@ -527,4 +537,9 @@ public class DynamicCurrencyCommand implements CommandExecutor, TabCompleter {
 
         return Collections.emptyList();
     }
+
+    private String formatHolders(Currency currency) {
+        long holders = plugin.getPlayerDataDAO().getHolderCount(currency.getId());
+        return holders >= 0 ? String.valueOf(holders) : "-";
+    }
 }
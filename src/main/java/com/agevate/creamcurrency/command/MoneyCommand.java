@@ -3,7 +3,7 @@ package com.agevate.creamcurrency.command;
 import com.agevate.creamcurrency.CreamCurrency;
 import com.agevate.creamcurrency.config.CommandConfig.SubCommand;
 import com.agevate.creamcurrency.currency.Currency;
-import com.agevate.creamcurrency.utils.NumberUtils;
+import com.agevate.creamcurrency.currency.Money;
 import com.agevate.creamcurrency.utils.TextUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -151,16 +151,16 @@ public class MoneyCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        double amount;
+        Money amount;
         try {
-            amount = NumberUtils.parseAmount(args[2]);
+            amount = currency.parse(args[2]);
         } catch (NumberFormatException e) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.invalid-amount",
                     "&cGeçersiz miktar.")));
             return;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             sender.sendMessage(TextUtils.colorize(plugin.getConfig().getString("messages.amount-positive",
                     "&cMiktar pozitif olmalıdır.")));
             return;
@@ -175,72 +175,73 @@ public class MoneyCommand implements CommandExecutor, TabCompleter {
             }
 
             // Use optimized atomic operations
-            plugin.getPlayerDataDAO().removeBalance(sender.getUniqueId(), currency.getId(), amount)
-                    .thenAccept(newSenderBalance -> {
-                        if (newSenderBalance < 0) {
+            plugin.getPlayerDataDAO()
+                    .transferUnits(sender.getUniqueId(), target.getUniqueId(), currency.getId(),
+                            amount.toStorageUnits())
+                    .thenAccept(result -> {
+                        if (!result.success()) {
                             sender.sendMessage(TextUtils.colorize(
                                     plugin.getConfig().getString("messages.insufficient-funds",
                                             "&cInsufficient funds.")));
                             return;
                         }
 
-                        plugin.getPlayerDataDAO().addBalance(target.getUniqueId(), currency.getId(), amount)
-                                .thenAccept(newTargetBalance -> {
-                                    String targetName = target.getName() != null ? target.getName() : "Unknown";
-
-                                    // Log the payment
-                                    plugin.getTransactionLogger().logPayment(
-                                            sender.getUniqueId(), sender.getName(),
-                                            target.getUniqueId(), targetName,
-                                            currency.getId(), amount);
-
-                                    String formattedAmount = currency.format(amount);
-
-                                    // Run on main thread for consistent message delivery
-                                    Bukkit.getScheduler().runTask(plugin, () -> {
-                                        // 1. Notify Sender
-                                        String sentChat = plugin.getConfig()
-                                                .getString("messages.pay.sent-chat", "&aSent %amount% to %player%.")
-                                                .replace("%amount%", formattedAmount)
-                                                .replace("%player%", targetName);
-                                        sender.sendMessage(TextUtils.colorize(sentChat));
-
-                                        String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
-                                                "");
-                                        if (sentBar != null && !sentBar.isBlank()) {
-                                            TextUtils.sendActionBar(sender, sentBar
-                                                    .replace("%amount%", formattedAmount)
-                                                    .replace("%player%", targetName));
-                                        }
-
-                                        String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
-                                        TextUtils.playSound(sender, sentSound);
-
-                                        // 2. Notify Receiver
-                                        Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
-                                        if (targetPlayer != null && targetPlayer.isOnline()) {
-                                            String senderName = sender.getName();
-                                            String receivedChat = plugin.getConfig()
-                                                    .getString("messages.pay.received-chat",
-                                                            "&aReceived %amount% from %player%.")
-                                                    .replace("%amount%", formattedAmount)
-                                                    .replace("%player%", senderName);
-                                            targetPlayer.sendMessage(TextUtils.colorize(receivedChat));
-
-                                            String receivedBar = plugin.getConfig()
-                                                    .getString("messages.pay.received-actionbar", "");
-                                            if (receivedBar != null && !receivedBar.isBlank()) {
-                                                TextUtils.sendActionBar(targetPlayer, receivedBar
-                                                        .replace("%amount%", formattedAmount)
-                                                        .replace("%player%", senderName));
-                                            }
-
-                                            String receivedSound = plugin.getConfig()
-                                                    .getString("messages.pay.sounds.received", "");
-                                            TextUtils.playSound(targetPlayer, receivedSound);
-                                        }
-                                    });
-                                });
+                        String targetName = target.getName() != null ? target.getName() : "Unknown";
+
+                        // Log the payment
+                        plugin.getTransactionLogger().logPayment(
+                                sender.getUniqueId(), sender.getName(),
+                                target.getUniqueId(), targetName,
+                                currency.getId(), amount.toDouble(),
+                                Money.storageUnitsToDouble(result.fromBalance()),
+                                Money.storageUnitsToDouble(result.toBalance()));
+
+                        String formattedAmount = currency.format(amount);
+
+                        // Run on main thread for consistent message delivery
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            // 1. Notify Sender
+                            String sentChat = plugin.getConfig()
+                                    .getString("messages.pay.sent-chat", "&aSent %amount% to %player%.")
+                                    .replace("%amount%", formattedAmount)
+                                    .replace("%player%", targetName);
+                            sender.sendMessage(TextUtils.colorize(sentChat));
+
+                            String sentBar = plugin.getConfig().getString("messages.pay.sent-actionbar",
+                                    "");
+                            if (sentBar != null && !sentBar.isBlank()) {
+                                TextUtils.sendActionBar(sender, sentBar
+                                        .replace("%amount%", formattedAmount)
+                                        .replace("%player%", targetName));
+                            }
+
+                            String sentSound = plugin.getConfig().getString("messages.pay.sounds.sent", "");
+                            TextUtils.playSound(sender, sentSound);
+
+                            // 2. Notify Receiver
+                            Player targetPlayer = Bukkit.getPlayer(target.getUniqueId());
+                            if (targetPlayer != null && targetPlayer.isOnline()) {
+                                String senderName = sender.getName();
+                                String receivedChat = plugin.getConfig()
+                                        .getString("messages.pay.received-chat",
+                                                "&aReceived %amount% from %player%.")
+                                        .replace("%amount%", formattedAmount)
+                                        .replace("%player%", senderName);
+                                targetPlayer.sendMessage(TextUtils.colorize(receivedChat));
+
+                                String receivedBar = plugin.getConfig()
+                                        .getString("messages.pay.received-actionbar", "");
+                                if (receivedBar != null && !receivedBar.isBlank()) {
+                                    TextUtils.sendActionBar(targetPlayer, receivedBar
+                                            .replace("%amount%", formattedAmount)
+                                            .replace("%player%", senderName));
+                                }
+
+                                String receivedSound = plugin.getConfig()
+                                        .getString("messages.pay.sounds.received", "");
+                                TextUtils.playSound(targetPlayer, receivedSound);
+                            }
+                        });
                     });
         });
     }
@@ -283,7 +284,8 @@ public class MoneyCommand implements CommandExecutor, TabCompleter {
 
                     sender.sendMessage(TextUtils.colorize(header));
                     sender.sendMessage(TextUtils.colorize(cmdConfig.getTopTotal()
-                            .replace("%amount%", currency.format(total))));
+                            .replace("%amount%", currency.format(total))
+                            .replace("%holders%", formatHolders(currency))));
 
                     if (topList.isEmpty()) {
                         sender.sendMessage(TextUtils.colorize(cmdConfig.getTopEmpty()));
@@ -336,4 +338,9 @@ public class MoneyCommand implements CommandExecutor, TabCompleter {
         }
         return Collections.emptyList();
     }
+
+    private String formatHolders(Currency currency) {
+        long holders = plugin.getPlayerDataDAO().getHolderCount(currency.getId());
+        return holders >= 0 ? String.valueOf(holders) : "-";
+    }
 }
@@ -109,7 +109,7 @@ public class CommandConfig {
         topEntry = messages.getString("top-entry", "%color%#%rank% &f%player% &8- &a%balance%");
         topEmpty = messages.getString("top-empty", "&7No data found.");
         topLoading = messages.getString("top-loading", "&7Loading...");
-        topTotal = messages.getString("top-total", "&7Total Economy: &a%amount%");
+        topTotal = messages.getString("top-total", "&7Total Economy: &a%amount% &7(%holders% holders)");
         topPage = messages.getString("top-page", "&7Page: %page%");
 
         ConfigurationSection colors = messages.getConfigurationSection("top-colors");
@@ -4,10 +4,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.List;
-import java.util.Locale;
 
 public class Currency {
 
@@ -19,7 +16,9 @@ public class Currency {
     private final String format;
     private final List<String> aliases;
     private final boolean payable;
-    private final DecimalFormat decimalFormat;
+    private final CurrencyFormatter formatter;
+    // Decimal places of exact amounts, taken from the format pattern
+    private final int scale;
     private final String balanceOther;
 
     public Currency(String id, File file) {
@@ -34,9 +33,9 @@ public class Currency {
         this.payable = config.getBoolean("payable", true);
         this.balanceOther = config.getString("balance-other", "&7%player%'nin " + this.name + "'i: &f%balance%");
 
-        // Initialize DecimalFormat with the configured pattern
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
-        this.decimalFormat = new DecimalFormat(this.format, symbols);
+        // Compile the configured pattern once; the formatter is safe to share across threads
+        this.formatter = CurrencyFormatter.compile(this.format, this.symbol, this.symbolBefore);
+        this.scale = Math.min(formatter.getMaximumFractionDigits(), Money.STORAGE_SCALE);
     }
 
     public String getId() {
@@ -59,6 +58,43 @@ public class Currency {
         return startBalance;
     }
 
+    /**
+     * Gets the number of decimal places amounts of this currency carry.
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Gets the start balance as an exact amount.
+     */
+    public Money getStartMoney() {
+        return Money.of(startBalance, scale);
+    }
+
+    /**
+     * Parses a user-entered amount of this currency exactly.
+     *
+     * @throws NumberFormatException if the input is not a valid amount.
+     */
+    public Money parse(String input) throws NumberFormatException {
+        Money amount = Money.parse(input, scale);
+        try {
+            // Every amount must fit in storage units
+            amount.toStorageUnits();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large");
+        }
+        return amount;
+    }
+
+    /**
+     * Converts storage units to an amount of this currency.
+     */
+    public Money fromStorageUnits(long storageUnits) {
+        return Money.fromStorageUnits(storageUnits, scale);
+    }
+
     public String getFormat() {
         return format;
     }
@@ -75,15 +111,25 @@ public class Currency {
         return balanceOther;
     }
 
+    /**
+     * Formats an exact amount using the configured format pattern and symbol.
+     */
+    public String format(Money amount) {
+        return formatter.format(amount.units(), amount.scale());
+    }
+
     /**
      * Formats the amount using the configured format pattern and symbol.
      */
     public String format(double amount) {
-        String formattedNumber = decimalFormat.format(amount);
-        if (symbolBefore) {
-            return symbol + formattedNumber;
-        } else {
-            return formattedNumber + symbol;
-        }
+        return formatter.format(amount);
+    }
+
+    /**
+     * Formats a balance in storage units in compact style (1.5K, 2M, ...)
+     * followed by the symbol.
+     */
+    public String formatCompact(long storageUnits) {
+        return formatter.formatCompact(storageUnits);
     }
 }
@@ -0,0 +1,251 @@
+package com.agevate.creamcurrency.currency;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Thread-safe formatter for currency amounts.
+ * <p>
+ * The configured {@link DecimalFormat} pattern is compiled once into its digit
+ * rules (integer and fraction digits, grouping, prefixes and suffixes), which
+ * are then applied directly to the scaled long of an amount. Output goes into
+ * a per-thread builder, so formatting takes no lock and allocates only the
+ * result string. Rounding is half-even, like {@code DecimalFormat}.
+ * <p>
+ * Patterns the writer does not cover (exponents, percent, multipliers) fall
+ * back to a per-thread {@code DecimalFormat}.
+ */
+public final class CurrencyFormatter {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final String[] COMPACT_SUFFIXES = { "", "K", "M", "B", "T" };
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    // Number style of the K/M/B/T placeholders
+    private static final NumberPattern COMPACT = NumberPattern.compile("#,##0.##");
+
+    private final NumberPattern number;
+    private final String symbol;
+    private final boolean symbolBefore;
+
+    private CurrencyFormatter(NumberPattern number, String symbol, boolean symbolBefore) {
+        this.number = number;
+        this.symbol = symbol;
+        this.symbolBefore = symbolBefore;
+    }
+
+    /**
+     * Compiles a {@link DecimalFormat} pattern such as {@code #,##0.00}.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid.
+     */
+    public static CurrencyFormatter compile(String pattern, String symbol, boolean symbolBefore) {
+        return new CurrencyFormatter(NumberPattern.compile(pattern), symbol, symbolBefore);
+    }
+
+    /**
+     * Gets the maximum number of fraction digits the pattern shows.
+     */
+    public int getMaximumFractionDigits() {
+        return number.maxFraction;
+    }
+
+    /**
+     * Formats an amount given as a scaled long, e.g. {@code (1250, 2)} for
+     * 12.50, with the currency symbol.
+     */
+    public String format(long units, int scale) {
+        StringBuilder out = buffer();
+        appendTo(out, units, scale);
+        return out.toString();
+    }
+
+    /**
+     * Formats an amount with the currency symbol. The exact value of the
+     * double is rounded once, half-even, to the shown fraction digits, as
+     * {@link DecimalFormat#format(double)} does.
+     */
+    public String format(double amount) {
+        StringBuilder out = buffer();
+        if (symbolBefore) {
+            out.append(symbol);
+            number.appendTo(out, amount);
+        } else {
+            number.appendTo(out, amount);
+            out.append(symbol);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends an amount given as a scaled long, with the currency symbol.
+     */
+    public void appendTo(StringBuilder out, long units, int scale) {
+        if (symbolBefore) {
+            out.append(symbol);
+            number.appendTo(out, units, scale);
+        } else {
+            number.appendTo(out, units, scale);
+            out.append(symbol);
+        }
+    }
+
+    /**
+     * Formats a balance in storage units in compact style (e.g. {@code 1.5K},
+     * {@code 2.25M}), followed by the currency symbol.
+     */
+    public String formatCompact(long storageUnits) {
+        // Dividing by 1000 is the same digits at three more decimal places
+        int step = 0;
+        while (step < COMPACT_SUFFIXES.length - 1
+                && storageUnits >= POWERS_OF_TEN[Money.STORAGE_SCALE + 3 * (step + 1)]) {
+            step++;
+        }
+        StringBuilder out = buffer();
+        COMPACT.appendTo(out, storageUnits, Money.STORAGE_SCALE + 3 * step);
+        return out.append(COMPACT_SUFFIXES[step]).append(symbol).toString();
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        return out;
+    }
+
+    /**
+     * Digit rules of a compiled pattern.
+     */
+    private static final class NumberPattern {
+
+        final int minInteger;
+        final int minFraction;
+        final int maxFraction;
+        final int groupingSize;
+        final boolean alwaysShowDecimal;
+        final String positivePrefix;
+        final String positiveSuffix;
+        final String negativePrefix;
+        final String negativeSuffix;
+        // Used for the patterns the digit writer does not cover
+        final ThreadLocal<DecimalFormat> fallback;
+        private final boolean useFallback;
+
+        private NumberPattern(String pattern) {
+            DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+            DecimalFormat format = new DecimalFormat(pattern, symbols);
+
+            this.minInteger = format.getMinimumIntegerDigits();
+            this.minFraction = format.getMinimumFractionDigits();
+            this.maxFraction = format.getMaximumFractionDigits();
+            this.groupingSize = format.isGroupingUsed() ? format.getGroupingSize() : 0;
+            this.alwaysShowDecimal = format.isDecimalSeparatorAlwaysShown();
+            this.positivePrefix = format.getPositivePrefix();
+            this.positiveSuffix = format.getPositiveSuffix();
+            this.negativePrefix = format.getNegativePrefix();
+            this.negativeSuffix = format.getNegativeSuffix();
+            this.fallback = ThreadLocal.withInitial(() -> new DecimalFormat(pattern, symbols));
+            this.useFallback = format.getMultiplier() != 1
+                    || format.toPattern().indexOf('E') >= 0
+                    || format.getMaximumIntegerDigits() < 19
+                    || maxFraction > POWERS_OF_TEN.length - 1;
+        }
+
+        static NumberPattern compile(String pattern) {
+            return new NumberPattern(pattern);
+        }
+
+        void appendTo(StringBuilder out, long units, int scale) {
+            if (useFallback || units == Long.MIN_VALUE || scale >= POWERS_OF_TEN.length) {
+                out.append(fallback.get().format(BigDecimal.valueOf(units, scale)));
+                return;
+            }
+            appendDigits(out, units < 0, Math.abs(units), scale);
+        }
+
+        void appendTo(StringBuilder out, double amount) {
+            if (useFallback || !Double.isFinite(amount)) {
+                out.append(fallback.get().format(amount));
+                return;
+            }
+            // new BigDecimal(double) is the exact binary value, not its shortest decimal
+            BigInteger rounded = new BigDecimal(amount).setScale(maxFraction, RoundingMode.HALF_EVEN)
+                    .unscaledValue().abs();
+            if (rounded.bitLength() > 62) {
+                out.append(fallback.get().format(amount));
+                return;
+            }
+            // DecimalFormat keeps the sign of values that round to zero, and of -0.0
+            appendDigits(out, Math.copySign(1.0, amount) < 0, rounded.longValue(), maxFraction);
+        }
+
+        private void appendDigits(StringBuilder out, boolean negative, long magnitude, int scale) {
+            // Round half-even to the shown fraction digits
+            int fractionDigits = scale;
+            if (scale > maxFraction) {
+                long divisor = POWERS_OF_TEN[scale - maxFraction];
+                long quotient = magnitude / divisor;
+                long twiceRemainder = (magnitude % divisor) * 2;
+                if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+                    quotient++;
+                }
+                magnitude = quotient;
+                fractionDigits = maxFraction;
+            }
+
+            long integerPart = magnitude / POWERS_OF_TEN[fractionDigits];
+            long fraction = magnitude % POWERS_OF_TEN[fractionDigits];
+
+            // Drop trailing zeros down to the minimum
+            while (fractionDigits > minFraction && fraction % 10 == 0) {
+                fraction /= 10;
+                fractionDigits--;
+            }
+
+            out.append(negative ? negativePrefix : positivePrefix);
+
+            boolean showFraction = fractionDigits > 0 || minFraction > 0;
+            if (integerPart != 0 || minInteger > 0 || !showFraction) {
+                appendInteger(out, integerPart);
+            }
+
+            if (showFraction || alwaysShowDecimal) {
+                out.append('.');
+            }
+            for (int i = fractionDigits - 1; i >= 0; i--) {
+                out.append((char) ('0' + (fraction / POWERS_OF_TEN[i]) % 10));
+            }
+            for (int i = fractionDigits; i < minFraction; i++) {
+                out.append('0');
+            }
+
+            out.append(negative ? negativeSuffix : positiveSuffix);
+        }
+
+        private void appendInteger(StringBuilder out, long value) {
+            int digits = 1;
+            while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+                digits++;
+            }
+            int width = Math.max(digits, Math.max(minInteger, 1));
+            for (int position = width - 1; position >= 0; position--) {
+                long digit = position < digits ? (value / POWERS_OF_TEN[position]) % 10 : 0;
+                out.append((char) ('0' + digit));
+                if (groupingSize > 0 && position > 0 && position % groupingSize == 0) {
+                    out.append(',');
+                }
+            }
+        }
+    }
+}
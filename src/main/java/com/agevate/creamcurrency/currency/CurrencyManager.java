@@ -12,6 +12,8 @@ public class CurrencyManager {
     private final CreamCurrency plugin;
     private final Map<String, Currency> currencies = new HashMap<>();
     private Currency primaryCurrency;
+    // Bumped on every (re)load so holders of Currency references can tell they are stale
+    private volatile int generation;
 
     public CurrencyManager(CreamCurrency plugin) {
         this.plugin = plugin;
@@ -28,8 +30,10 @@ public class CurrencyManager {
         }
 
         File[] files = currenciesFolder.listFiles((dir, name) -> name.endsWith(".yml"));
-        if (files == null)
+        if (files == null) {
+            generation++;
             return;
+        }
 
         for (File file : files) {
             String id = file.getName().replace(".yml", "");
@@ -43,6 +47,7 @@ public class CurrencyManager {
         }
 
         setupPrimaryCurrency();
+        generation++;
     }
 
     private void setupPrimaryCurrency() {
@@ -71,4 +76,11 @@ public class CurrencyManager {
     public Map<String, Currency> getCurrencies() {
         return currencies;
     }
+
+    /**
+     * Gets a counter that changes every time the currencies are reloaded.
+     */
+    public int getGeneration() {
+        return generation;
+    }
 }
@@ -0,0 +1,265 @@
+package com.agevate.creamcurrency.currency;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Exact amount of a currency, stored as a whole number of minor units.
+ * <p>
+ * The scale (number of decimal places) comes from the currency's configured
+ * format, so "12.50" of a two-decimal currency is 1250 units at scale 2.
+ * Arithmetic is done on longs and fails instead of overflowing.
+ * <p>
+ * Balances are stored and cached at {@link #STORAGE_SCALE}, the highest scale
+ * a currency can have; the static {@code storage*} helpers convert to and
+ * from those units without allocating.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int STORAGE_SCALE = 4;
+
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L };
+    private static final long STORAGE_FACTOR = POWERS_OF_TEN[STORAGE_SCALE];
+
+    /**
+     * Largest balance magnitude that can be stored, about 9.2 * 10^14
+     * (922,337,203,685,477 whole units): {@link Long#MAX_VALUE} storage units.
+     * Amounts and balances beyond it are refused, and rows beyond it are not
+     * migrated into the balance table.
+     */
+    public static final double MAX_STORABLE = (double) Long.MAX_VALUE / STORAGE_FACTOR;
+
+    private static final Pattern PATTERN = Pattern.compile("^([0-9]+(?:\\.[0-9]+)?)([kKmMbBtT]?)$");
+
+    private static final Money[] ZERO = new Money[STORAGE_SCALE + 1];
+
+    static {
+        for (int scale = 0; scale <= STORAGE_SCALE; scale++) {
+            ZERO[scale] = new Money(0, scale);
+        }
+    }
+
+    private final long units;
+    private final int scale;
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    /**
+     * Creates an amount from minor units, e.g. {@code ofUnits(1250, 2)} is 12.50.
+     */
+    public static Money ofUnits(long units, int scale) {
+        checkScale(scale);
+        return units == 0 ? ZERO[scale] : new Money(units, scale);
+    }
+
+    public static Money zero(int scale) {
+        checkScale(scale);
+        return ZERO[scale];
+    }
+
+    /**
+     * Creates an amount from a decimal, rounding half-up to the scale.
+     *
+     * @throws ArithmeticException if the amount does not fit.
+     */
+    public static Money of(BigDecimal amount, int scale) {
+        checkScale(scale);
+        return ofUnits(amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact(), scale);
+    }
+
+    /**
+     * Creates an amount from a double, rounding half-up to the scale. Meant for
+     * adapters such as Vault that only speak double.
+     *
+     * @throws ArithmeticException if the amount is not finite or does not fit.
+     */
+    public static Money of(double amount, int scale) {
+        if (!Double.isFinite(amount)) {
+            throw new ArithmeticException("Not a finite amount: " + amount);
+        }
+        return of(BigDecimal.valueOf(amount), scale);
+    }
+
+    /**
+     * Parses a user-entered amount such as {@code 250}, {@code 12.5} or
+     * {@code 1.5t} exactly, without going through floating point. Amounts with
+     * more decimals than the scale are refused rather than rounded, so
+     * {@code 1.5} of a whole-number currency is not paid as 2.
+     *
+     * @throws NumberFormatException if the input is malformed, has too many
+     *                               decimals or the amount does not fit.
+     */
+    public static Money parse(String input, int scale) throws NumberFormatException {
+        if (input == null || input.isEmpty()) {
+            throw new NumberFormatException("Empty input");
+        }
+        Matcher matcher = PATTERN.matcher(input);
+        if (!matcher.matches()) {
+            throw new NumberFormatException("Invalid format");
+        }
+
+        BigDecimal amount = new BigDecimal(matcher.group(1));
+        switch (matcher.group(2).toLowerCase(Locale.ROOT)) {
+            case "k":
+                amount = amount.movePointRight(3);
+                break;
+            case "m":
+                amount = amount.movePointRight(6);
+                break;
+            case "b":
+                amount = amount.movePointRight(9);
+                break;
+            case "t":
+                amount = amount.movePointRight(12);
+                break;
+            default:
+                break;
+        }
+
+        checkScale(scale);
+        if (amount.stripTrailingZeros().scale() > scale) {
+            throw new NumberFormatException("Too many decimals");
+        }
+        try {
+            return of(amount, scale);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large");
+        }
+    }
+
+    public long units() {
+        return units;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public Money plus(Money other) {
+        checkSameScale(other);
+        return ofUnits(Math.addExact(units, other.units), scale);
+    }
+
+    public Money minus(Money other) {
+        checkSameScale(other);
+        return ofUnits(Math.subtractExact(units, other.units), scale);
+    }
+
+    public Money negate() {
+        return ofUnits(Math.negateExact(units), scale);
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isZero() {
+        return units == 0;
+    }
+
+    public boolean isNegative() {
+        return units < 0;
+    }
+
+    public boolean isPositive() {
+        return units > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    public double toDouble() {
+        return (double) units / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Converts to storage units (scale {@link #STORAGE_SCALE}). Exact.
+     *
+     * @throws ArithmeticException if the amount does not fit.
+     */
+    public long toStorageUnits() {
+        return Math.multiplyExact(units, POWERS_OF_TEN[STORAGE_SCALE - scale]);
+    }
+
+    /**
+     * Converts storage units to an amount at the given scale, rounding half-up
+     * if the stored value has more decimals than the currency shows.
+     */
+    public static Money fromStorageUnits(long storageUnits, int scale) {
+        checkScale(scale);
+        long divisor = POWERS_OF_TEN[STORAGE_SCALE - scale];
+        if (divisor == 1) {
+            return ofUnits(storageUnits, scale);
+        }
+        long quotient = storageUnits / divisor;
+        long remainder = storageUnits % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += Long.signum(storageUnits);
+        }
+        return ofUnits(quotient, scale);
+    }
+
+    /**
+     * Converts a double amount to storage units, rounding half-up.
+     *
+     * @throws ArithmeticException if the amount is not finite or does not fit.
+     */
+    public static long toStorageUnits(double amount) {
+        if (!(Math.abs(amount) < MAX_STORABLE)) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return Math.round(amount * STORAGE_FACTOR);
+    }
+
+    public static double storageUnitsToDouble(long storageUnits) {
+        return (double) storageUnits / STORAGE_FACTOR;
+    }
+
+    /**
+     * Gets the storage factor, i.e. how many storage units make one whole
+     * currency unit.
+     */
+    public static long storageFactor() {
+        return STORAGE_FACTOR;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkSameScale(other);
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && units == other.units && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units) * 31 + scale;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private void checkSameScale(Money other) {
+        if (scale != other.scale) {
+            throw new IllegalArgumentException("Scale mismatch: " + scale + " vs " + other.scale);
+        }
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > STORAGE_SCALE) {
+            throw new IllegalArgumentException("Unsupported scale: " + scale);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.agevate.creamcurrency.database;
+
+import com.agevate.creamcurrency.CreamCurrency;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Write-behind journal for balance changes.
+ * Mutations are coalesced per (player, currency) and committed by a background
+ * flusher in one batched transaction per interval. The ledger rows of the
+ * changes are kept in order and inserted in the same transactions, each after
+ * the balance it results in has been recorded, so a completed
+ * {@link #flush()} leaves the balances and the ledger in step.
+ * <p>
+ * Changes that still cannot be written when the plugin shuts down are dumped to
+ * {@code unflushed-balances.tsv} in the data folder and queued again on the
+ * next start.
+ */
+public class BalanceJournal {
+
+    private final CreamCurrency plugin;
+    private final ScheduledExecutorService flusher;
+    private final long flushIntervalMs;
+    private final int maxBatchSize;
+    private final boolean flushOnDisable;
+    // Nothing may be written before the tables are migrated
+    private final CompletableFuture<Void> schemaReady;
+
+    // Latest absolute balance per key that has not been written yet
+    private final Map<Key, PendingWrite> pending = new ConcurrentHashMap<>();
+    // Entries taken by the flusher that are not committed yet (still visible to readers)
+    private final Map<Key, PendingWrite> inFlight = new ConcurrentHashMap<>();
+    // Ledger rows not written yet, oldest first; null when the ledger is disabled
+    private final TransactionLedger ledger;
+    private final Deque<TransactionLedger.Transaction> pendingRows = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    // Unflushed changes of the previous shutdown; deleted once they are written
+    private final File dumpFile;
+    private volatile boolean restored;
+
+    // Attempts of the final flush on shutdown before the rest is dumped
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+    private static final long SHUTDOWN_RETRY_DELAY_MS = 500;
+    // First field of the dump lines that hold ledger rows instead of balances
+    private static final String ROW_MARKER = "ledger";
+
+    private record Key(UUID uuid, String currencyId) {
+    }
+
+    // Balance in storage units
+    private record PendingWrite(UUID uuid, String playerName, String currencyId, long balance) {
+    }
+
+    public BalanceJournal(CreamCurrency plugin, CompletableFuture<Void> schemaReady, TransactionLedger ledger) {
+        this.plugin = plugin;
+        this.schemaReady = schemaReady;
+        this.ledger = ledger;
+        this.flushIntervalMs = Math.max(50, plugin.getConfig().getLong("database.write-behind.flush-interval-ms", 1000));
+        this.maxBatchSize = Math.max(1, plugin.getConfig().getInt("database.write-behind.max-batch-size", 500));
+        this.flushOnDisable = plugin.getConfig().getBoolean("database.write-behind.flush-on-disable", true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CreamCurrency-Flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.dumpFile = new File(plugin.getDataFolder(), "unflushed-balances.tsv");
+        restoreDump();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records the new absolute balance of a player, in storage units. Older
+     * unflushed values for the same key are replaced.
+     */
+    public void record(UUID uuid, String playerName, String currencyId, long balance) {
+        pending.put(new Key(uuid, currencyId), new PendingWrite(uuid, playerName, currencyId, balance));
+
+        // Don't wait for the next interval if a full batch is already waiting
+        if (pending.size() >= maxBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Records the ledger row of a change. Must be called after the resulting
+     * balances were recorded, under the same per-key locks.
+     */
+    public void record(TransactionLedger.Transaction transaction) {
+        if (ledger != null) {
+            pendingRows.add(transaction);
+        }
+    }
+
+    /**
+     * Gets the latest balance, in storage units, that has not reached the
+     * database yet, or null if the database is up to date for this key.
+     */
+    public Long getPending(UUID uuid, String currencyId) {
+        Key key = new Key(uuid, currencyId);
+        PendingWrite write = pending.get(key);
+        if (write == null) {
+            write = inFlight.get(key);
+        }
+        return write != null ? write.balance() : null;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Unexpected error while flushing balance journal", e);
+        }
+    }
+
+    /**
+     * Writes all pending changes to the database, one batch at a time.
+     *
+     * @return the number of balances written.
+     */
+    public int flush() {
+        if (!schemaReady.isDone() || schemaReady.isCompletedExceptionally()) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            int written = 0;
+            while (!pending.isEmpty() || !pendingRows.isEmpty()) {
+                List<PendingWrite> batch = drainBatch();
+                // Taken after the balances: every row taken has its balance taken now or before
+                List<TransactionLedger.Transaction> rows = drainRows();
+                if (batch.isEmpty() && rows.isEmpty()) {
+                    break;
+                }
+                if (!writeBatch(batch, rows)) {
+                    break;
+                }
+                written += batch.size();
+            }
+            if (restored && pending.isEmpty() && pendingRows.isEmpty()) {
+                deleteDump();
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Flushes everything, then runs a task on a write connection while no
+     * further flush can start, so the task sees the balances and the ledger in
+     * step. Changes recorded meanwhile stay pending, balances and rows alike.
+     * The connection is taken after the flush lock, the order the flusher
+     * takes them in.
+     *
+     * @throws SQLException if not everything could be flushed, or from the task.
+     */
+    public <T> T whileFlushed(Database.SqlTask<T> task) throws SQLException {
+        synchronized (flushLock) {
+            flush();
+            if (!pending.isEmpty() || !pendingRows.isEmpty()) {
+                throw new SQLException("The balance journal could not be flushed");
+            }
+            try (Connection connection = plugin.getDatabase().getConnection()) {
+                return task.run(connection);
+            }
+        }
+    }
+
+    private List<TransactionLedger.Transaction> drainRows() {
+        List<TransactionLedger.Transaction> rows = new ArrayList<>();
+        TransactionLedger.Transaction row;
+        while (rows.size() < maxBatchSize && (row = pendingRows.pollFirst()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private List<PendingWrite> drainBatch() {
+        List<PendingWrite> batch = new ArrayList<>(Math.min(maxBatchSize, pending.size()));
+        for (Map.Entry<Key, PendingWrite> entry : pending.entrySet()) {
+            if (batch.size() >= maxBatchSize) {
+                break;
+            }
+            PendingWrite write = entry.getValue();
+            // Only take the value we saw; a newer write stays pending for the next batch
+            inFlight.put(entry.getKey(), write);
+            if (pending.remove(entry.getKey(), write)) {
+                batch.add(write);
+            } else {
+                inFlight.remove(entry.getKey(), write);
+            }
+        }
+        return batch;
+    }
+
+    private boolean writeBatch(List<PendingWrite> batch, List<TransactionLedger.Transaction> rows) {
+        String dbType = plugin.getConfig().getString("database.type", "SQLITE");
+        String sql = dbType.equalsIgnoreCase("MYSQL") ? PlayerDataDAO.SQL_UPSERT_BALANCE
+                : PlayerDataDAO.SQL_UPSERT_BALANCE_SQLITE;
+
+        boolean success = false;
+        try (Connection connection = plugin.getDatabase().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (PendingWrite write : batch) {
+                    statement.setBytes(1, SchemaMigrator.uuidToBytes(write.uuid()));
+                    statement.setString(2, write.playerName());
+                    statement.setString(3, write.currencyId());
+                    statement.setLong(4, write.balance());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                if (!rows.isEmpty()) {
+                    ledger.insert(connection, rows);
+                }
+                connection.commit();
+                success = true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to flush " + batch.size() + " balance changes, will retry", e);
+        }
+
+        if (!success) {
+            // Back in front, in their order
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                pendingRows.addFirst(rows.get(i));
+            }
+        }
+        for (PendingWrite write : batch) {
+            Key key = new Key(write.uuid(), write.currencyId());
+            if (!success) {
+                // Re-queue unless a newer value was recorded meanwhile
+                pending.putIfAbsent(key, write);
+            }
+            inFlight.remove(key, write);
+        }
+        return success;
+    }
+
+    /**
+     * Stops the background flusher and, if configured, writes everything that is
+     * still pending. A failed final flush is retried a few times; whatever is
+     * left after that is dumped to a file and restored on the next start.
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+        }
+
+        if (!flushOnDisable) {
+            if (!pending.isEmpty()) {
+                plugin.getLogger().warning("Discarding " + pending.size() + " unflushed balance changes (flush-on-disable is off).");
+            }
+            if (!pendingRows.isEmpty()) {
+                plugin.getLogger().warning("Discarding " + pendingRows.size() + " unflushed transaction history rows; "
+                        + "snapshots taken before now can no longer be used to rebuild balances.");
+                markLedgerIncomplete();
+            }
+            return;
+        }
+
+        if (!schemaReady.isDone() || schemaReady.isCompletedExceptionally()) {
+            plugin.getLogger().warning("Database schema is not ready, not flushing " + pending.size()
+                    + " balance changes.");
+        } else {
+            int written = 0;
+            for (int attempt = 1; attempt <= SHUTDOWN_ATTEMPTS
+                    && (!pending.isEmpty() || !pendingRows.isEmpty()); attempt++) {
+                if (attempt > 1) {
+                    try {
+                        Thread.sleep(SHUTDOWN_RETRY_DELAY_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                written += flush();
+            }
+            if (written > 0) {
+                plugin.getLogger().info("Flushed " + written + " pending balance changes.");
+            }
+        }
+        if (!pending.isEmpty() || !pendingRows.isEmpty()) {
+            dumpPending();
+        }
+    }
+
+    private void markLedgerIncomplete() {
+        try (Connection connection = plugin.getDatabase().getConnection()) {
+            BalanceRecovery.markSnapshotsIncomplete(connection);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to mark balance snapshots as incomplete", e);
+        }
+    }
+
+    /**
+     * Writes the changes that could not be flushed to the dump file, replacing
+     * it. Nothing is lost unless this fails too, which is logged with the count.
+     */
+    private void dumpPending() {
+        List<PendingWrite> left = new ArrayList<>(pending.values());
+        List<TransactionLedger.Transaction> rows = new ArrayList<>(pendingRows);
+        File temp = new File(dumpFile.getPath() + ".tmp");
+        try {
+            Files.createDirectories(dumpFile.getParentFile().toPath());
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (PendingWrite write : left) {
+                    writer.write(write.uuid() + "\t" + write.currencyId() + "\t" + write.balance() + "\t"
+                            + (write.playerName() != null ? write.playerName() : ""));
+                    writer.newLine();
+                }
+                for (TransactionLedger.Transaction row : rows) {
+                    writer.write(ROW_MARKER + "\t" + row.timestamp() + "\t" + row.type() + "\t" + text(row.from()) + "\t"
+                            + text(row.to()) + "\t" + row.currencyId() + "\t" + row.amount() + "\t"
+                            + text(row.fromBalance()) + "\t" + text(row.toBalance()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), dumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            plugin.getLogger().warning("Could not write " + left.size() + " balance changes and " + rows.size()
+                    + " transaction history rows to the database; saved them to " + dumpFile.getName()
+                    + ", they are written on the next start.");
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Lost " + left.size() + " unflushed balance changes and "
+                    + rows.size() + " transaction history rows: could not write them to the database or to "
+                    + dumpFile.getName(), e);
+        }
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    /**
+     * Queues the changes dumped by the previous shutdown. They are newer than
+     * the database, so they are restored before anything is read.
+     */
+    private void restoreDump() {
+        if (!dumpFile.isFile()) {
+            return;
+        }
+        int count = 0;
+        try {
+            for (String line : Files.readAllLines(dumpFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields[0].equals(ROW_MARKER) && fields.length >= 9) {
+                    if (ledger == null) {
+                        // Disabled now, and snapshots are marked incomplete for that on start
+                        continue;
+                    }
+                    pendingRows.add(new TransactionLedger.Transaction(0, Long.parseLong(fields[1]), fields[2],
+                            uuidOrNull(fields[3]), uuidOrNull(fields[4]), fields[5], Long.parseLong(fields[6]),
+                            longOrNull(fields[7]), longOrNull(fields[8]), null));
+                    continue;
+                }
+                if (fields.length < 4) {
+                    continue;
+                }
+                UUID uuid = UUID.fromString(fields[0]);
+                String name = fields[3].isEmpty() ? null : fields[3];
+                pending.put(new Key(uuid, fields[1]),
+                        new PendingWrite(uuid, name, fields[1], Long.parseLong(fields[2])));
+                count++;
+            }
+            restored = true;
+            plugin.getLogger().warning("Restored " + count + " balance changes that were not written before the "
+                    + "last shutdown from " + dumpFile.getName() + ".");
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to read " + dumpFile.getName()
+                    + ", the balance changes in it were not restored", e);
+        }
+    }
+
+    private static UUID uuidOrNull(String text) {
+        return text.isEmpty() ? null : UUID.fromString(text);
+    }
+
+    private static Long longOrNull(String text) {
+        return text.isEmpty() ? null : Long.parseLong(text);
+    }
+
+    private void deleteDump() {
+        restored = false;
+        if (!dumpFile.delete() && dumpFile.exists()) {
+            plugin.getLogger().warning("Could not delete " + dumpFile.getName() + " after writing its changes.");
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.agevate.creamcurrency.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Balance snapshots and replay of the transaction ledger on top of them.
+ * <p>
+ * A snapshot copies {@code cream_balances} together with the id of the last
+ * {@code cream_transactions} row at that moment. A rebuild loads a snapshot
+ * and replays every later row. Rows are streamed in id order, in chunks; each
+ * chunk is split into partitions by player UUID and the partitions are applied
+ * in parallel, so the rows of one player are still applied in order.
+ * <p>
+ * Rows that carry a resulting balance set it; others apply their amount. The
+ * first kind makes replaying a row whose effect is already in the snapshot
+ * harmless.
+ * <p>
+ * A rebuild is only correct if every change after the snapshot is in the
+ * ledger. Snapshots are therefore marked complete when taken, and marked
+ * incomplete again whenever changes may have gone unrecorded (the ledger was
+ * disabled, or unwritten rows were discarded); rebuilds only start from
+ * complete ones. Snapshots and rebuilds must run on a connection no other
+ * balance write can go through meanwhile: SQLite's write connection, which
+ * is exclusive while borrowed, or on MySQL/MariaDB under table locks taken
+ * here.
+ */
+class BalanceRecovery {
+
+    private static final String SQL_MAX_TRANSACTION = "SELECT MAX(id) FROM cream_transactions";
+
+    private static final String SQL_INSERT_SNAPSHOT = "INSERT INTO cream_snapshots (created_at, last_transaction_id, complete) VALUES (?, ?, 1)";
+
+    private static final String SQL_MARK_INCOMPLETE = "UPDATE cream_snapshots SET complete = 0 WHERE complete = 1";
+
+    // Everything a snapshot reads or writes; MySQL only lets a locking session use locked tables
+    private static final String SQL_LOCK_FOR_SNAPSHOT = "LOCK TABLES cream_balances READ, cream_transactions READ, "
+            + "cream_snapshots WRITE, cream_snapshot_balances WRITE";
+
+    private static final String SQL_LOCK_FOR_REBUILD = "LOCK TABLES cream_balances WRITE, cream_transactions READ, "
+            + "cream_snapshots READ, cream_snapshot_balances READ";
+
+    // Keeps the stored name when the snapshot has none
+    private static final String SQL_UPSERT_BALANCE = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) "
+            + "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE balance = VALUES(balance), "
+            + "player_name = COALESCE(VALUES(player_name), player_name)";
+
+    private static final String SQL_UPSERT_BALANCE_SQLITE = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) "
+            + "VALUES (?, ?, ?, ?) ON CONFLICT (player_uuid, currency_id) DO UPDATE SET balance = excluded.balance, "
+            + "player_name = COALESCE(excluded.player_name, player_name)";
+
+    private static final String SQL_COPY_BALANCES = "INSERT INTO cream_snapshot_balances "
+            + "(snapshot_id, player_uuid, player_name, currency_id, balance) "
+            + "SELECT ?, player_uuid, player_name, currency_id, balance FROM cream_balances";
+
+    private static final String SQL_UPDATE_SNAPSHOT_COUNT = "UPDATE cream_snapshots SET balances = ? WHERE id = ?";
+
+    private static final String SQL_SELECT_LATEST_TIME = "SELECT MAX(created_at) FROM cream_snapshots";
+
+    private static final String SQL_SELECT_SNAPSHOT = "SELECT id, created_at, last_transaction_id, balances FROM cream_snapshots "
+            + "WHERE created_at <= ? AND complete = 1 ORDER BY id DESC LIMIT 1";
+
+    // Id of the newest snapshot past the ones to keep
+    private static final String SQL_SELECT_PRUNE_ID = "SELECT id FROM cream_snapshots ORDER BY id DESC LIMIT 1 OFFSET ?";
+
+    private static final String SQL_DELETE_SNAPSHOT_BALANCES = "DELETE FROM cream_snapshot_balances WHERE snapshot_id <= ?";
+
+    private static final String SQL_DELETE_SNAPSHOTS = "DELETE FROM cream_snapshots WHERE id <= ?";
+
+    private static final String SQL_SELECT_SNAPSHOT_BALANCES = "SELECT player_uuid, player_name, currency_id, balance "
+            + "FROM cream_snapshot_balances WHERE snapshot_id = ?";
+
+    private static final String SQL_SELECT_TRANSACTIONS = "SELECT id, from_uuid, to_uuid, currency_id, amount, "
+            + "from_balance, to_balance FROM cream_transactions WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private final boolean mysql;
+    private final int partitions = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    record Snapshot(long id, long createdAt, long lastTransactionId, int balances) {
+    }
+
+    record Rebuild(Snapshot snapshot, long transactions, int balances) {
+    }
+
+    private record Key(UUID uuid, String currencyId) {
+    }
+
+    // One side of a ledger row; balance is null when only the amount is known
+    private record Step(Key key, long delta, Long balance) {
+    }
+
+    private static final class Balance {
+        String name;
+        long units;
+
+        Balance(String name, long units) {
+            this.name = name;
+            this.units = units;
+        }
+    }
+
+    BalanceRecovery(boolean mysql) {
+        this.mysql = mysql;
+    }
+
+    /**
+     * Marks every snapshot as unusable for rebuilds, because changes after it
+     * may be missing from the ledger.
+     *
+     * @return the number of snapshots marked.
+     */
+    static int markSnapshotsIncomplete(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_MARK_INCOMPLETE)) {
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Copies the current balances into a new snapshot and deletes all but the
+     * newest {@code keep} snapshots. The last ledger id and the balances are
+     * read with writes held off, so no change can be in one but not the other.
+     */
+    Snapshot snapshot(Connection connection, int keep) throws SQLException {
+        long createdAt = System.currentTimeMillis();
+        connection.setAutoCommit(false);
+        lock(connection, SQL_LOCK_FOR_SNAPSHOT);
+        try {
+            long lastTransactionId = 0;
+            try (PreparedStatement statement = connection.prepareStatement(SQL_MAX_TRANSACTION);
+                    ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    lastTransactionId = rs.getLong(1);
+                }
+            }
+
+            long id;
+            try (PreparedStatement statement = connection.prepareStatement(SQL_INSERT_SNAPSHOT,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                statement.setLong(1, createdAt);
+                statement.setLong(2, lastTransactionId);
+                statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id returned for the new snapshot");
+                    }
+                    id = keys.getLong(1);
+                }
+            }
+
+            int balances;
+            try (PreparedStatement statement = connection.prepareStatement(SQL_COPY_BALANCES)) {
+                statement.setLong(1, id);
+                balances = statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(SQL_UPDATE_SNAPSHOT_COUNT)) {
+                statement.setInt(1, balances);
+                statement.setLong(2, id);
+                statement.executeUpdate();
+            }
+
+            prune(connection, keep);
+            connection.commit();
+            return new Snapshot(id, createdAt, lastTransactionId, balances);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            unlock(connection);
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Takes MySQL table locks for the transaction just begun; with autocommit
+     * off they are held until after the commit. SQLite needs none, its write
+     * connection is exclusive.
+     */
+    private void lock(Connection connection, String sql) throws SQLException {
+        if (!mysql) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            connection.setAutoCommit(true);
+            throw e;
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        if (!mysql) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UNLOCK TABLES");
+        }
+    }
+
+    private void prune(Connection connection, int keep) throws SQLException {
+        long pruneId;
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_PRUNE_ID)) {
+            statement.setInt(1, Math.max(1, keep));
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                pruneId = rs.getLong(1);
+            }
+        }
+        for (String sql : new String[] { SQL_DELETE_SNAPSHOT_BALANCES, SQL_DELETE_SNAPSHOTS }) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, pruneId);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return the creation time of the newest snapshot, or -1 if there is none.
+     */
+    long latestSnapshotTime(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_LATEST_TIME);
+                ResultSet rs = statement.executeQuery()) {
+            if (rs.next()) {
+                long time = rs.getLong(1);
+                return rs.wasNull() ? -1 : time;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Rebuilds {@code cream_balances} from the newest complete snapshot taken
+     * at or before {@code before} and the ledger rows after it. Balances of
+     * players that are in neither are left as they are.
+     *
+     * @return the rebuild, or null if there is no such snapshot.
+     */
+    Rebuild rebuild(Connection connection, long before) throws SQLException {
+        connection.setAutoCommit(false);
+        lock(connection, SQL_LOCK_FOR_REBUILD);
+        try {
+            Snapshot snapshot = findSnapshot(connection, before);
+            if (snapshot == null) {
+                connection.commit();
+                return null;
+            }
+            Rebuild rebuild = replay(connection, snapshot);
+            connection.commit();
+            return rebuild;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            unlock(connection);
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private Rebuild replay(Connection connection, Snapshot snapshot) throws SQLException {
+        List<Map<Key, Balance>> state = new ArrayList<>(partitions);
+        List<List<Step>> steps = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            state.add(new HashMap<>());
+            steps.add(new ArrayList<>());
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SNAPSHOT_BALANCES)) {
+            statement.setLong(1, snapshot.id());
+            // MySQL Connector/J only streams with this fetch size
+            statement.setFetchSize(mysql ? Integer.MIN_VALUE : 1000);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Key key = new Key(SchemaMigrator.uuidFromBytes(rs.getBytes(1)), rs.getString(3));
+                    state.get(partitionOf(key.uuid())).put(key, new Balance(rs.getString(2), rs.getLong(4)));
+                }
+            }
+        }
+
+        long lastId = snapshot.lastTransactionId();
+        long transactions = 0;
+        while (true) {
+            int rows = 0;
+            try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_TRANSACTIONS)) {
+                statement.setLong(1, lastId);
+                statement.setInt(2, CHUNK_SIZE);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastId = rs.getLong(1);
+                        byte[] from = rs.getBytes(2);
+                        byte[] to = rs.getBytes(3);
+                        String currencyId = rs.getString(4);
+                        long amount = rs.getLong(5);
+                        long fromBalance = rs.getLong(6);
+                        Long fromValue = rs.wasNull() ? null : fromBalance;
+                        long toBalance = rs.getLong(7);
+                        Long toValue = rs.wasNull() ? null : toBalance;
+                        if (from != null) {
+                            addStep(steps, new Key(SchemaMigrator.uuidFromBytes(from), currencyId), -amount, fromValue);
+                        }
+                        if (to != null) {
+                            addStep(steps, new Key(SchemaMigrator.uuidFromBytes(to), currencyId), amount, toValue);
+                        }
+                    }
+                }
+            }
+            if (rows == 0) {
+                break;
+            }
+
+            IntStream.range(0, partitions).parallel().forEach(partition -> {
+                Map<Key, Balance> balances = state.get(partition);
+                List<Step> partitionSteps = steps.get(partition);
+                for (Step step : partitionSteps) {
+                    Balance balance = balances.computeIfAbsent(step.key(), key -> new Balance(null, 0));
+                    balance.units = step.balance() != null ? step.balance() : balance.units + step.delta();
+                }
+                partitionSteps.clear();
+            });
+            transactions += rows;
+            if (rows < CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        return new Rebuild(snapshot, transactions, write(connection, state));
+    }
+
+    private Snapshot findSnapshot(Connection connection, long before) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SNAPSHOT)) {
+            statement.setLong(1, before);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    return new Snapshot(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getInt(4));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addStep(List<List<Step>> steps, Key key, long delta, Long balance) {
+        steps.get(partitionOf(key.uuid())).add(new Step(key, delta, balance));
+    }
+
+    private int partitionOf(UUID uuid) {
+        return Math.floorMod(uuid.hashCode(), partitions);
+    }
+
+    // Runs inside the rebuild's transaction
+    private int write(Connection connection, List<Map<Key, Balance>> state) throws SQLException {
+        int written = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                mysql ? SQL_UPSERT_BALANCE : SQL_UPSERT_BALANCE_SQLITE)) {
+            for (Map<Key, Balance> balances : state) {
+                for (Map.Entry<Key, Balance> entry : balances.entrySet()) {
+                    statement.setBytes(1, SchemaMigrator.uuidToBytes(entry.getKey().uuid()));
+                    statement.setString(2, entry.getValue().name);
+                    statement.setString(3, entry.getKey().currencyId());
+                    statement.setLong(4, entry.getValue().units);
+                    statement.addBatch();
+                    if (++written % WRITE_BATCH_SIZE == 0) {
+                        statement.executeBatch();
+                    }
+                }
+            }
+            statement.executeBatch();
+            return written;
+        }
+    }
+}
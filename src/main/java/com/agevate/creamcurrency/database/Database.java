@@ -3,6 +3,9 @@ package com.agevate.creamcurrency.database;
 import com.agevate.creamcurrency.CreamCurrency;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public abstract class Database {
     protected final CreamCurrency plugin;
@@ -11,7 +14,39 @@ public abstract class Database {
         this.plugin = plugin;
     }
 
+    /**
+     * Work done with a connection as part of a write.
+     */
+    @FunctionalInterface
+    public interface SqlTask<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
     public abstract Connection getConnection() throws SQLException;
 
+    /**
+     * Gets a connection for queries that do not write. Same as
+     * {@link #getConnection()} unless the database keeps separate readers.
+     */
+    public Connection getReadConnection() throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Runs a write task. The returned future completes on the given executor
+     * once the task's changes are committed, and exceptionally if they are
+     * not. By default the task runs on the executor with a connection of its
+     * own and handles its transaction itself.
+     */
+    public <T> CompletableFuture<T> write(SqlTask<T> task, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = getConnection()) {
+                return task.run(connection);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
     public abstract void close();
 }
@@ -2,7 +2,11 @@ package com.agevate.creamcurrency.database;
 
 import com.agevate.creamcurrency.CreamCurrency;
 import com.agevate.creamcurrency.cache.BalanceCache;
+import com.agevate.creamcurrency.cache.LeaderboardCache;
+import com.agevate.creamcurrency.cache.LoadCoalescer;
 import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.Money;
+import com.agevate.creamcurrency.sync.SyncManager;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -12,6 +16,7 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 
 /**
@@ -21,37 +26,88 @@ public class PlayerDataDAO {
 
     private final CreamCurrency plugin;
     private final BalanceCache cache;
+    private final LeaderboardCache leaderboard;
     private final ExecutorService executor;
+    // Write-behind journal, null when every mutation is written through
+    private final BalanceJournal journal;
+    // Queryable transaction history, null when disabled
+    private final TransactionLedger ledger;
+    // Snapshots and replay, null when the ledger is disabled
+    private final BalanceRecovery recovery;
+    private final org.bukkit.scheduler.BukkitTask snapshotTask;
+    // Cache updates to and from other servers, null when sync is disabled
+    private final SyncManager sync;
+    // Completes once the tables exist in the current layout
+    private final CompletableFuture<Void> schemaReady = new CompletableFuture<>();
+    // Also serves balances the online schema upgrade has not copied yet
+    private final SchemaMigrator migrator;
+    // Striped per-key locks for the write-behind ledger
+    private final Object[] ledgerLocks = new Object[64];
+    // Supply and holder differences to the database seen on the last check
+    private final java.util.Map<String, long[]> supplyDrift = new java.util.concurrent.ConcurrentHashMap<>();
+    private final org.bukkit.scheduler.BukkitTask reconcileTask;
+    // Rescans the leaderboard when other servers may change balances unseen; null otherwise
+    private final org.bukkit.scheduler.BukkitTask rescanTask;
 
     // Prepared statement strings (constants for performance)
-    private static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS cream_balances (" +
-            "player_uuid VARCHAR(36) NOT NULL, " +
-            "player_name VARCHAR(32), " +
-            "currency_id VARCHAR(32) NOT NULL, " +
-            "balance DOUBLE NOT NULL DEFAULT 0, " +
-            "PRIMARY KEY (player_uuid, currency_id))";
+    private static final String SQL_SELECT_BALANCE = "SELECT balance FROM cream_balances WHERE player_uuid = ? AND currency_id = ?";
 
-    // SQL to add player_name column if it doesn't exist (for migration)
-    private static final String SQL_ADD_NAME_COLUMN_MYSQL = "ALTER TABLE cream_balances ADD COLUMN IF NOT EXISTS player_name VARCHAR(32)";
-    private static final String SQL_ADD_NAME_COLUMN_SQLITE_CHECK = "SELECT COUNT(*) AS cnt FROM pragma_table_info('cream_balances') WHERE name='player_name'";
+    private static final String SQL_SELECT_ALL_BALANCES = "SELECT player_uuid, player_name, currency_id, balance FROM cream_balances";
 
-    private static final String SQL_SELECT_BALANCE = "SELECT balance FROM cream_balances WHERE player_uuid = ? AND currency_id = ?";
+    // Followed by the placeholders of one chunk of UUIDs
+    private static final String SQL_SELECT_BALANCES_IN = "SELECT player_uuid, balance FROM cream_balances WHERE currency_id = ? AND player_uuid IN (";
+
+    // Most UUIDs bound in one IN (...) query; stays below SQLite's old limit of 999 parameters
+    private static final int MAX_IN_CHUNK = 512;
+
+    private static final String SQL_SELECT_PLAYER_BALANCES = "SELECT currency_id, balance FROM cream_balances WHERE player_uuid = ?";
+
+    private static final String SQL_SELECT_SUPPLY = "SELECT currency_id, SUM(balance), SUM(CASE WHEN balance > 0 THEN 1 ELSE 0 END) "
+            + "FROM cream_balances GROUP BY currency_id";
+
+    // Check-and-debit in one statement; only matches when the balance covers the amount
+    private static final String SQL_DEBIT = "UPDATE cream_balances SET balance = balance - ? WHERE player_uuid = ? AND currency_id = ? AND balance >= ?";
+
+    private static final String SQL_DEBIT_RETURNING = SQL_DEBIT + " RETURNING balance";
 
-    private static final String SQL_UPDATE_ADD = "UPDATE cream_balances SET balance = balance + ? WHERE player_uuid = ? AND currency_id = ?";
+    private static final String SQL_INSERT_IGNORE_BALANCE = "INSERT IGNORE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
 
-    private static final String SQL_UPSERT_BALANCE = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?) "
+    private static final String SQL_INSERT_IGNORE_BALANCE_SQLITE = "INSERT OR IGNORE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
+
+    // Add-or-create in one statement; the inserted value already includes the start balance
+    private static final String SQL_UPSERT_ADD = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE balance = balance + ?";
+
+    private static final String SQL_UPSERT_ADD_NAME = SQL_UPSERT_ADD + ", player_name = VALUES(player_name)";
+
+    private static final String SQL_UPSERT_ADD_SQLITE = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT(player_uuid, currency_id) DO UPDATE SET balance = balance + ?";
+
+    private static final String SQL_UPSERT_ADD_RETURNING_SQLITE = SQL_UPSERT_ADD_SQLITE + " RETURNING balance";
+
+    private static final String SQL_UPSERT_ADD_NAME_RETURNING_SQLITE = SQL_UPSERT_ADD_SQLITE
+            + ", player_name = excluded.player_name RETURNING balance";
+
+    static final String SQL_UPSERT_BALANCE = "INSERT INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?) "
             +
             "ON DUPLICATE KEY UPDATE balance = VALUES(balance), player_name = VALUES(player_name)";
 
-    private static final String SQL_UPSERT_BALANCE_SQLITE = "INSERT OR REPLACE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
+    static final String SQL_UPSERT_BALANCE_SQLITE = "INSERT OR REPLACE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
 
     // Record for top balance entries that includes player name
     public record TopBalanceEntry(java.util.UUID uuid, String name, double balance) {
     }
 
-    private static final String SQL_CREATE_SETTINGS_TABLE = "CREATE TABLE IF NOT EXISTS cream_player_settings (" +
-            "player_uuid VARCHAR(36) PRIMARY KEY, " +
-            "payments_disabled BOOLEAN NOT NULL DEFAULT 0)";
+    // Outcome of a transfer with both resulting balances, in storage units
+    public record TransferResult(boolean success, long fromBalance, long toBalance) {
+        public static final TransferResult FAILED = new TransferResult(false, BalanceCache.REJECTED,
+                BalanceCache.REJECTED);
+    }
+
+    // Outcome of a rebuild: the snapshot it started from and what was replayed
+    public record RebuildResult(long snapshotTime, int snapshotBalances, long transactions, int balances,
+            long millis) {
+    }
 
     private static final String SQL_SELECT_SETTINGS = "SELECT payments_disabled FROM cream_player_settings WHERE player_uuid = ?";
 
@@ -70,58 +126,210 @@ public class PlayerDataDAO {
     // Payment toggle cache
     private final java.util.Map<java.util.UUID, Boolean> paymentsDisabledCache = new java.util.concurrent.ConcurrentHashMap<>();
 
+    // Marks the pool's own threads so blocking waits on them can be refused
+    private static final ThreadLocal<Boolean> DATABASE_THREAD = ThreadLocal.withInitial(() -> false);
+
+    // Last player name written to the database per player in this session
+    private final java.util.Map<java.util.UUID, String> knownNames = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Balance loads in flight, shared by every caller missing the same key
+    private final LoadCoalescer<LoadKey, Long> loads;
+
+    private record LoadKey(UUID uuid, String currencyId) {
+    }
+
+    private static final long MAX_LOAD_BACKOFF_MS = 30000;
+
     public PlayerDataDAO(CreamCurrency plugin) {
         this.plugin = plugin;
         this.cache = new BalanceCache();
-        // Use a fixed thread pool for database operations
-        this.executor = Executors.newFixedThreadPool(
-                Math.max(4, Runtime.getRuntime().availableProcessors()),
-                r -> {
-                    Thread t = new Thread(r, "CreamCurrency-DB-Thread");
-                    t.setDaemon(true);
-                    return t;
-                });
+        this.leaderboard = new LeaderboardCache();
+        this.loads = new LoadCoalescer<>(plugin.getConfig().getLong("cache.load-failure-backoff-ms", 500),
+                MAX_LOAD_BACKOFF_MS);
+        for (int i = 0; i < ledgerLocks.length; i++) {
+            ledgerLocks[i] = new Object();
+        }
+        this.executor = createExecutor();
+        this.migrator = new SchemaMigrator(plugin);
+        // The journal writes the ledger rows of the changes it holds
+        this.ledger = plugin.getConfig().getBoolean("logging.ledger.enabled", true)
+                ? new TransactionLedger(plugin, schemaReady, executor)
+                : null;
+        this.journal = plugin.getConfig().getBoolean("database.write-behind.enabled", false)
+                ? new BalanceJournal(plugin, schemaReady, ledger)
+                : null;
+        if (journal == null && new java.io.File(plugin.getDataFolder(), "unflushed-balances.tsv").isFile()) {
+            plugin.getLogger().warning("unflushed-balances.tsv holds balance changes from the last shutdown; "
+                    + "enable database.write-behind to write them.");
+        }
+        this.recovery = ledger != null ? new BalanceRecovery(isMySQL()) : null;
+        this.sync = SyncManager.create(plugin, cache, leaderboard, schemaReady);
         createTable();
+
+        long reconcileTicks = Math.max(60, plugin.getConfig().getLong("top.supply-reconcile-interval-seconds", 300)) * 20L;
+        this.reconcileTask = org.bukkit.Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::reconcileSupply,
+                reconcileTicks, reconcileTicks);
+        // Without sync, changes other servers make to a shared MySQL database only show up in a rescan
+        if (isMySQL() && sync == null && journal == null) {
+            long rescanTicks = Math.max(10, plugin.getConfig().getLong("top.refresh-interval-seconds", 60)) * 20L;
+            this.rescanTask = org.bukkit.Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                    this::rescanLeaderboard, rescanTicks, rescanTicks);
+        } else {
+            this.rescanTask = null;
+        }
+        // Checked every minute; a snapshot is only taken once the newest one is old enough
+        this.snapshotTask = recovery != null
+                ? org.bukkit.Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::snapshotIfDue, 1200L, 1200L)
+                : null;
+    }
+
+    /**
+     * Creates the pool database tasks run on: a fixed pool of platform
+     * threads, or with {@code database.virtual-threads.enabled} a virtual
+     * thread per task. Virtual threads wait for one of a limited number of
+     * permits (by default one per connection), so a burst of tasks parks
+     * cheaply instead of queueing behind slow queries or exhausting the
+     * connection pool.
+     */
+    private ExecutorService createExecutor() {
+        if (!plugin.getConfig().getBoolean("database.virtual-threads.enabled", false)) {
+            // Use a fixed thread pool for database operations
+            return Executors.newFixedThreadPool(
+                    Math.max(4, Runtime.getRuntime().availableProcessors()),
+                    r -> {
+                        Thread t = new Thread(() -> {
+                            DATABASE_THREAD.set(true);
+                            r.run();
+                        }, "CreamCurrency-DB-Thread");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        int permits = plugin.getConfig().getInt("database.virtual-threads.max-concurrency", 0);
+        if (permits <= 0) {
+            permits = isMySQL()
+                    ? plugin.getConfig().getInt("database.mysql.pool-size", 10)
+                    : plugin.getConfig().getInt("database.sqlite.read-pool-size", 4) + 1;
+        }
+        java.util.concurrent.Semaphore running = new java.util.concurrent.Semaphore(Math.max(1, permits));
+        java.util.concurrent.ThreadFactory virtual = Thread.ofVirtual().name("CreamCurrency-DB-Virtual-", 0).factory();
+        return Executors.newThreadPerTaskExecutor(r -> virtual.newThread(() -> {
+            running.acquireUninterruptibly();
+            try {
+                DATABASE_THREAD.set(true);
+                r.run();
+            } finally {
+                running.release();
+            }
+        }));
     }
 
     private void createTable() {
         executor.submit(() -> {
+            boolean copying;
             try (Connection connection = plugin.getDatabase().getConnection()) {
-                try (PreparedStatement statement = connection.prepareStatement(SQL_CREATE_TABLE)) {
-                    statement.executeUpdate();
-                }
-                try (PreparedStatement statement = connection.prepareStatement(SQL_CREATE_SETTINGS_TABLE)) {
-                    statement.executeUpdate();
+                copying = migrator.migrate(connection);
+                if (ledger == null && BalanceRecovery.markSnapshotsIncomplete(connection) > 0) {
+                    // Changes made from now on are not recorded, so no snapshot can be replayed to the present
+                    plugin.getLogger().warning("The transaction ledger is disabled; existing balance snapshots "
+                            + "can no longer be used to rebuild balances.");
                 }
-                // Migration: Add player_name column if it doesn't exist
-                migrateAddPlayerNameColumn(connection);
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to create database tables!", e);
+                plugin.getLogger().log(Level.SEVERE, "Failed to create or migrate database tables!", e);
+                // Keep queued operations from writing to a table in an unknown layout
+                schemaReady.completeExceptionally(e);
+                return;
+            }
+            // Usable while legacy balances are still copied; they are read from the old table meanwhile
+            schemaReady.complete(null);
+            if (copying && !migrator.copyLegacyBalances(plugin.getDatabase())) {
+                // The leaderboard would miss every balance not copied; top lists use the database
+                return;
+            }
+            try (Connection connection = plugin.getDatabase().getReadConnection()) {
+                seedLeaderboard(connection);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to load the leaderboard, top lists will use the database", e);
             }
         });
     }
 
-    private void migrateAddPlayerNameColumn(Connection connection) {
-        String dbType = plugin.getConfig().getString("database.type", "SQLITE");
-        try {
-            if (dbType.equalsIgnoreCase("MYSQL")) {
-                try (PreparedStatement stmt = connection.prepareStatement(SQL_ADD_NAME_COLUMN_MYSQL)) {
-                    stmt.executeUpdate();
+    /**
+     * Runs a database task on the pool once the schema is ready.
+     */
+    private <T> CompletableFuture<T> supplyAsync(java.util.function.Supplier<T> task) {
+        return schemaReady.thenApplyAsync(ready -> task.get(), executor);
+    }
+
+    private CompletableFuture<Void> runAsync(Runnable task) {
+        return schemaReady.thenRunAsync(task, executor);
+    }
+
+    /**
+     * Hands a write to the database once the schema is ready. The future
+     * completes on the pool after the write is committed. If it could not be
+     * committed, {@code onFailure} runs and the future completes with
+     * {@code failed}; the task itself reports the failures it catches.
+     */
+    private <T> CompletableFuture<T> writeAsync(Database.SqlTask<T> task, T failed, Runnable onFailure) {
+        return schemaReady.thenComposeAsync(ready -> plugin.getDatabase().write(task, executor)
+                .exceptionally(e -> {
+                    plugin.getLogger().log(Level.WARNING, "Failed to write to the database", e);
+                    onFailure.run();
+                    return failed;
+                }), executor);
+    }
+
+    /**
+     * Loads every stored balance into the leaderboard with one streaming scan.
+     */
+    private void seedLeaderboard(Connection connection) {
+        long start = System.currentTimeMillis();
+        int rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_ALL_BALANCES)) {
+            // MySQL Connector/J only streams with this fetch size
+            statement.setFetchSize(isMySQL() ? Integer.MIN_VALUE : 1000);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    leaderboard.seed(SchemaMigrator.uuidFromBytes(resultSet.getBytes(1)), resultSet.getString(2),
+                            resultSet.getString(3), resultSet.getLong(4));
+                    rows++;
                 }
-            } else {
-                // SQLite: Check if column exists first
-                try (PreparedStatement checkStmt = connection.prepareStatement(SQL_ADD_NAME_COLUMN_SQLITE_CHECK);
-                        ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next() && rs.getInt("cnt") == 0) {
-                        try (PreparedStatement alterStmt = connection.prepareStatement(
-                                "ALTER TABLE cream_balances ADD COLUMN player_name VARCHAR(32)")) {
-                            alterStmt.executeUpdate();
-                        }
-                    }
+            }
+            leaderboard.markReady();
+            plugin.getLogger().info("Loaded " + rows + " balances into the leaderboard in "
+                    + (System.currentTimeMillis() - start) + "ms.");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to load the leaderboard, top lists will use the database", e);
+        }
+    }
+
+    /**
+     * Reloads the leaderboard from the database into new boards and swaps them
+     * in, picking up balances changed by other servers.
+     */
+    private void rescanLeaderboard() {
+        if (!leaderboard.isReady() || migrator.isCopying()) {
+            return;
+        }
+        leaderboard.beginRescan();
+        try (Connection connection = plugin.getDatabase().getReadConnection();
+                PreparedStatement statement = connection.prepareStatement(SQL_SELECT_ALL_BALANCES)) {
+            // MySQL Connector/J only streams with this fetch size
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    leaderboard.rescan(SchemaMigrator.uuidFromBytes(resultSet.getBytes(1)), resultSet.getString(2),
+                            resultSet.getString(3), resultSet.getLong(4));
                 }
             }
+            leaderboard.finishRescan();
+            // The totals are rebuilt with the boards
+            supplyDrift.clear();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Could not migrate player_name column (may already exist)", e);
+            leaderboard.abortRescan();
+            plugin.getLogger().log(Level.WARNING, "Failed to refresh the leaderboard", e);
         }
     }
 
@@ -129,35 +337,239 @@ public class PlayerDataDAO {
      * Gets balance from cache first, falls back to database if not cached.
      */
     public CompletableFuture<Double> getBalance(UUID uuid, String currencyId) {
+        return getUnits(uuid, currencyId).thenApply(Money::storageUnitsToDouble);
+    }
+
+    /**
+     * Gets a balance in storage units (see {@link Money#STORAGE_SCALE}), from
+     * the cache first and the database if not cached. Concurrent misses for
+     * the same key share one query. While loads are failing, misses get the
+     * start balance without querying (and without caching it) for a backoff
+     * that doubles with each failure in a row.
+     */
+    public CompletableFuture<Long> getUnits(UUID uuid, String currencyId) {
         // Check cache first
-        Double cached = cache.get(uuid, currencyId);
-        if (cached != null) {
+        long cached = cache.getUnits(uuid, currencyId);
+        if (cached != BalanceCache.ABSENT) {
             return CompletableFuture.completedFuture(cached);
         }
 
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection connection = plugin.getDatabase().getConnection();
-                    PreparedStatement statement = connection.prepareStatement(SQL_SELECT_BALANCE)) {
-                statement.setString(1, uuid.toString());
-                statement.setString(2, currencyId);
+        // Unflushed writes are newer than anything in the database
+        if (journal != null) {
+            Long pending = journal.getPending(uuid, currencyId);
+            if (pending != null) {
+                return CompletableFuture.completedFuture(cache.putIfAbsent(uuid, currencyId, pending));
+            }
+        }
 
-                try (ResultSet resultSet = statement.executeQuery()) {
-                    if (resultSet.next()) {
-                        double balance = resultSet.getDouble("balance");
-                        cache.set(uuid, currencyId, balance);
-                        return balance;
+        if (loads.isBackingOff()) {
+            return CompletableFuture.completedFuture(startUnits(currencyId));
+        }
+        return loads.load(new LoadKey(uuid, currencyId), () -> supplyAsync(() -> loadUnits(uuid, currencyId)));
+    }
+
+    private long loadUnits(UUID uuid, String currencyId) {
+        try (Connection connection = plugin.getDatabase().getReadConnection();
+                PreparedStatement statement = connection.prepareStatement(SQL_SELECT_BALANCE)) {
+            statement.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+            statement.setString(2, currencyId);
+
+            Long stored = null;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    stored = resultSet.getLong("balance");
+                }
+            }
+            if (stored == null) {
+                stored = migrator.readLegacyBalance(connection, uuid, currencyId);
+            }
+            // Start balance for new players
+            long units = stored != null ? stored : startUnits(currencyId);
+            loads.succeeded();
+            // Don't clobber a value written to the cache while we were loading
+            return cache.putIfAbsent(uuid, currencyId, units);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to get balance for " + uuid, e);
+            loads.failed();
+        }
+        // Not cached: it would be taken for the real balance once the database is back
+        return startUnits(currencyId);
+    }
+
+    /**
+     * Gets the balances of several players in storage units, from the cache
+     * where possible. Uncached players are loaded together with chunked
+     * {@code IN (...)} queries, sharing loads already in flight like
+     * {@link #getUnits(UUID, String)}.
+     *
+     * @return a future of a map from each distinct player to their balance.
+     */
+    public CompletableFuture<java.util.Map<UUID, Long>> getUnits(java.util.Collection<UUID> uuids, String currencyId) {
+        java.util.Map<UUID, Long> result = new java.util.HashMap<>();
+        java.util.Map<UUID, CompletableFuture<Long>> waiting = new java.util.HashMap<>();
+        java.util.Map<UUID, CompletableFuture<Long>> owned = new java.util.LinkedHashMap<>();
+        boolean backoff = loads.isBackingOff();
+
+        for (UUID uuid : uuids) {
+            if (result.containsKey(uuid) || waiting.containsKey(uuid)) {
+                continue;
+            }
+            long cached = cache.getUnits(uuid, currencyId);
+            if (cached != BalanceCache.ABSENT) {
+                result.put(uuid, cached);
+                continue;
+            }
+            Long pending = journal != null ? journal.getPending(uuid, currencyId) : null;
+            if (pending != null) {
+                result.put(uuid, cache.putIfAbsent(uuid, currencyId, pending));
+                continue;
+            }
+            if (backoff) {
+                result.put(uuid, startUnits(currencyId));
+                continue;
+            }
+            CompletableFuture<Long> load = new CompletableFuture<>();
+            CompletableFuture<Long> inFlight = loads.join(new LoadKey(uuid, currencyId), load);
+            if (inFlight == null) {
+                owned.put(uuid, load);
+            }
+            waiting.put(uuid, inFlight != null ? inFlight : load);
+        }
+
+        if (waiting.isEmpty()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        if (!owned.isEmpty()) {
+            supplyAsync(() -> loadUnits(owned.keySet(), currencyId)).whenComplete((loaded, error) -> {
+                for (java.util.Map.Entry<UUID, CompletableFuture<Long>> entry : owned.entrySet()) {
+                    loads.finish(new LoadKey(entry.getKey(), currencyId), entry.getValue(),
+                            error == null ? loaded.get(entry.getKey()) : null, error);
+                }
+            });
+        }
+        return CompletableFuture.allOf(waiting.values().toArray(new CompletableFuture[0])).thenApply(done -> {
+            waiting.forEach((uuid, future) -> result.put(uuid, future.join()));
+            return result;
+        });
+    }
+
+    /**
+     * Gets the balances of several players, from the cache where possible and
+     * with batched queries for the rest.
+     */
+    public CompletableFuture<java.util.Map<UUID, Double>> getBalances(java.util.Collection<UUID> uuids,
+            String currencyId) {
+        return getUnits(uuids, currencyId).thenApply(units -> {
+            java.util.Map<UUID, Double> balances = new java.util.HashMap<>(units.size() * 2);
+            units.forEach((uuid, value) -> balances.put(uuid, Money.storageUnitsToDouble(value)));
+            return balances;
+        });
+    }
+
+    /**
+     * Loads the balances of several players and caches them. Chunks are
+     * rounded up to a power of two by repeating the last UUID, so only a few
+     * distinct queries get prepared.
+     */
+    private java.util.Map<UUID, Long> loadUnits(java.util.Collection<UUID> uuids, String currencyId) {
+        java.util.List<UUID> keys = new java.util.ArrayList<>(uuids);
+        java.util.Map<UUID, Long> stored = new java.util.HashMap<>();
+        boolean failed = false;
+        try (Connection connection = plugin.getDatabase().getReadConnection()) {
+            for (int from = 0; from < keys.size(); from += MAX_IN_CHUNK) {
+                int count = Math.min(MAX_IN_CHUNK, keys.size() - from);
+                int size = Math.min(MAX_IN_CHUNK, Integer.highestOneBit(count) == count ? count
+                        : Integer.highestOneBit(count) << 1);
+                String sql = SQL_SELECT_BALANCES_IN + "?" + ",?".repeat(size - 1) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, currencyId);
+                    for (int i = 0; i < size; i++) {
+                        UUID uuid = keys.get(from + Math.min(i, count - 1));
+                        statement.setBytes(i + 2, SchemaMigrator.uuidToBytes(uuid));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            stored.put(SchemaMigrator.uuidFromBytes(resultSet.getBytes(1)), resultSet.getLong(2));
+                        }
+                    }
+                }
+            }
+            if (migrator.isCopying()) {
+                for (UUID uuid : keys) {
+                    if (!stored.containsKey(uuid)) {
+                        Long legacy = migrator.readLegacyBalance(connection, uuid, currencyId);
+                        if (legacy != null) {
+                            stored.put(uuid, legacy);
+                        }
+                    }
+                }
+            }
+            loads.succeeded();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to get " + keys.size() + " balances of " + currencyId, e);
+            loads.failed();
+            failed = true;
+        }
+
+        java.util.Map<UUID, Long> result = new java.util.HashMap<>(keys.size() * 2);
+        long start = startUnits(currencyId);
+        for (UUID uuid : keys) {
+            Long units = stored.get(uuid);
+            if (units != null) {
+                result.put(uuid, cache.putIfAbsent(uuid, currencyId, units));
+            } else {
+                // Players without a row have the start balance; after a failure it is not cached
+                result.put(uuid, failed ? start : cache.putIfAbsent(uuid, currencyId, start));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads every currency balance and the settings of a player in one round
+     * trip and fills the caches. Currencies without a row get their start
+     * balance. Values already cached are kept, as they may be newer.
+     */
+    public CompletableFuture<Void> loadPlayer(UUID uuid) {
+        return runAsync(() -> {
+            java.util.Map<String, Long> balances = new java.util.HashMap<>();
+            boolean paymentsDisabled = false;
+
+            try (Connection connection = plugin.getDatabase().getReadConnection()) {
+                try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_PLAYER_BALANCES)) {
+                    statement.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            balances.put(resultSet.getString("currency_id"), resultSet.getLong("balance"));
+                        }
+                    }
+                }
+                migrator.readLegacyBalances(connection, uuid).forEach(balances::putIfAbsent);
+                try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SETTINGS)) {
+                    statement.setString(1, uuid.toString());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (resultSet.next()) {
+                            paymentsDisabled = resultSet.getBoolean("payments_disabled");
+                        }
                     }
                 }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to get balance for " + uuid, e);
+                // Leave the caches cold; lookups will fall back to per-currency loads
+                plugin.getLogger().log(Level.WARNING, "Failed to load player data for " + uuid, e);
+                loads.failed();
+                return;
             }
 
-            // Return start balance for new players
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            double startBalance = currency != null ? currency.getStartBalance() : 0.0;
-            cache.set(uuid, currencyId, startBalance);
-            return startBalance;
-        }, executor);
+            for (Currency currency : plugin.getCurrencyManager().getCurrencies().values()) {
+                String currencyId = currency.getId();
+                Long balance = journal != null ? journal.getPending(uuid, currencyId) : null;
+                if (balance == null) {
+                    balance = balances.get(currencyId);
+                }
+                cache.putIfAbsent(uuid, currencyId, balance != null ? balance : startUnits(currencyId));
+            }
+            paymentsDisabledCache.putIfAbsent(uuid, paymentsDisabled);
+        });
     }
 
     /**
@@ -171,9 +583,18 @@ public class PlayerDataDAO {
      * Sets balance with player name and updates cache.
      */
     public CompletableFuture<Void> setBalance(UUID uuid, String playerName, String currencyId, double amount) {
-        // Update cache immediately for responsiveness
-        cache.set(uuid, currencyId, amount);
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
+            plugin.getLogger().warning("Refusing to set an out-of-range balance for " + uuid + ": " + amount);
+            return CompletableFuture.completedFuture(null);
+        }
+        return setUnits(uuid, playerName, currencyId, units);
+    }
 
+    /**
+     * Sets a balance in storage units and updates cache.
+     */
+    public CompletableFuture<Void> setUnits(UUID uuid, String playerName, String currencyId, long units) {
         // Try to get player name if not provided
         String finalName = playerName;
         if (finalName == null) {
@@ -184,102 +605,676 @@ public class PlayerDataDAO {
         }
         final String nameToSave = finalName;
 
-        return CompletableFuture.runAsync(() -> {
-            String dbType = plugin.getConfig().getString("database.type", "SQLITE");
-            String sql = dbType.equalsIgnoreCase("MYSQL") ? SQL_UPSERT_BALANCE : SQL_UPSERT_BALANCE_SQLITE;
+        if (journal != null) {
+            synchronized (ledgerLock(uuid, currencyId)) {
+                long previous = cache.getUnits(uuid, currencyId);
+                cache.set(uuid, currencyId, units);
+                updateLeaderboard(uuid, nameToSave, currencyId, units);
+                journal.record(uuid, nameToSave, currencyId, units);
+                // Replay sets the balance, the amount is only for history
+                journal.record(TransactionLedger.entry(TransactionLedger.SET, null, uuid, currencyId,
+                        previous != BalanceCache.ABSENT ? units - previous : units, null, units));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
 
-            try (Connection connection = plugin.getDatabase().getConnection();
-                    PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, uuid.toString());
-                statement.setString(2, nameToSave);
-                statement.setString(3, currencyId);
-                statement.setDouble(4, amount);
-                statement.executeUpdate();
+        return writeAsync(connection -> {
+            try {
+                long previous;
+                // On SQLite this is the task's savepoint, so a failure undoes both statements
+                connection.setAutoCommit(false);
+                try {
+                    previous = setRow(connection, uuid, nameToSave, currencyId, units);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return previous;
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.WARNING, "Failed to set balance for " + uuid, e);
                 // Invalidate cache on failure so next read goes to DB
                 cache.invalidate(uuid, currencyId);
             }
-        }, executor);
+            return null;
+        }, null, () -> cache.invalidate(uuid, currencyId)).thenAccept(previous -> {
+            // Committed now: publish the new balance outside the write transaction
+            if (previous != null) {
+                publishCommitted(uuid, nameToSave, currencyId, units - previous, units, true);
+            }
+        });
+    }
+
+    /**
+     * Replaces one row on the given connection and records the change in the
+     * ledger. Transaction boundaries are left to the caller.
+     *
+     * @return the balance replaced, the start balance if there was no row.
+     */
+    private long setRow(Connection connection, UUID uuid, String playerName, String currencyId, long units)
+            throws SQLException {
+        migrator.copyPlayer(connection, uuid);
+        // The balance replaced, so the cache can tell whether it is in step
+        long previous = selectBalance(connection, uuid, currencyId);
+        if (previous == BalanceCache.ABSENT) {
+            previous = startUnits(currencyId);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                isMySQL() ? SQL_UPSERT_BALANCE : SQL_UPSERT_BALANCE_SQLITE)) {
+            statement.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+            statement.setString(2, playerName);
+            statement.setString(3, currencyId);
+            statement.setLong(4, units);
+            statement.executeUpdate();
+        }
+        recordLedger(connection, TransactionLedger.entry(TransactionLedger.SET, null, uuid, currencyId,
+                units - previous, null, units));
+        return previous;
+    }
+
+    /**
+     * Inserts a ledger row on the connection that makes the change, so the
+     * two commit or roll back together. Does nothing if the ledger is disabled.
+     */
+    private void recordLedger(Connection connection, TransactionLedger.Transaction transaction)
+            throws SQLException {
+        if (ledger != null) {
+            ledger.insert(connection, transaction);
+        }
     }
 
     /**
      * Adds amount to current balance (atomic operation in DB).
+     *
+     * @return the new balance, or -1.0 on failure.
      */
     public CompletableFuture<Double> addBalance(UUID uuid, String currencyId, double amount) {
-        // Optimistic update in cache
-        Double current = cache.get(uuid, currencyId);
-        if (current != null) {
-            cache.set(uuid, currencyId, current + amount);
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
+            return CompletableFuture.completedFuture(-1.0);
         }
+        return addUnits(uuid, currencyId, units).thenApply(PlayerDataDAO::toDouble);
+    }
 
+    /**
+     * Adds storage units to the current balance (atomic operation in DB).
+     *
+     * @return the new balance, or {@link BalanceCache#REJECTED} on overflow or
+     *         failure.
+     */
+    public CompletableFuture<Long> addUnits(UUID uuid, String currencyId, long amount) {
         // Try to get player name
         org.bukkit.OfflinePlayer offlinePlayer = org.bukkit.Bukkit.getOfflinePlayer(uuid);
         final String playerName = offlinePlayer.getName();
 
-        return CompletableFuture.supplyAsync(() -> {
-            // Check if player exists in DB first (due to INSERT/UPDATE logic)
-            // But we can just use setBalance flow for simplicity IF they don't exist
-            // For true atomicity we need to ensure they exist.
+        if (journal != null) {
+            return onLedger(uuid, currencyId, () -> applyToLedger(uuid, playerName, currencyId, amount, false));
+        }
 
-            try (Connection connection = plugin.getDatabase().getConnection()) {
-                // Try update first
-                try (PreparedStatement update = connection.prepareStatement(SQL_UPDATE_ADD)) {
-                    update.setDouble(1, amount);
-                    update.setString(2, uuid.toString());
-                    update.setString(3, currencyId);
-                    int rows = update.executeUpdate();
-
-                    if (rows == 0) {
-                        // Player doesn't exist, use setBalance logic
-                        Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-                        double start = (currency != null ? currency.getStartBalance() : 0.0) + amount;
-                        setBalance(uuid, playerName, currencyId, start).join();
-                        return start;
-                    } else if (playerName != null) {
-                        // Update the player name if we have it
-                        try (PreparedStatement updateName = connection.prepareStatement(
-                                "UPDATE cream_balances SET player_name = ? WHERE player_uuid = ? AND currency_id = ?")) {
-                            updateName.setString(1, playerName);
-                            updateName.setString(2, uuid.toString());
-                            updateName.setString(3, currencyId);
-                            updateName.executeUpdate();
-                        }
-                    }
-                }
+        // The cache only holds committed balances here, so it is not touched
+        // until the write commits; an add that would overflow it is refused
+        long cached = cache.getUnits(uuid, currencyId);
+        if (cached != BalanceCache.ABSENT) {
+            try {
+                Math.addExact(cached, amount);
+            } catch (ArithmeticException e) {
+                return CompletableFuture.completedFuture(BalanceCache.REJECTED);
+            }
+        }
 
-                // Fetch the new balance to sync cache
-                try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_BALANCE)) {
-                    select.setString(1, uuid.toString());
-                    select.setString(2, currencyId);
-                    try (ResultSet rs = select.executeQuery()) {
-                        if (rs.next()) {
-                            double newBal = rs.getDouble(1);
-                            cache.set(uuid, currencyId, newBal);
-                            return newBal;
-                        }
-                    }
+        return addUnitsInDatabase(uuid, playerName, currencyId, amount);
+    }
+
+    /**
+     * Runs the atomic add against the database. SQLite adds (or creates the
+     * row) and reads the new balance back in one upsert with RETURNING;
+     * MySQL/MariaDB upsert and read back on the same connection. The ledger
+     * row is written in the same transaction.
+     */
+    private CompletableFuture<Long> addUnitsInDatabase(UUID uuid, String playerName, String currencyId,
+            long amount) {
+        return writeAsync(connection -> {
+            try {
+                long newBalance;
+                // On SQLite this is the task's savepoint, so a failure undoes both statements
+                connection.setAutoCommit(false);
+                try {
+                    newBalance = creditRow(connection, uuid, playerName, currencyId, amount);
+                    recordLedger(connection, TransactionLedger.entry(TransactionLedger.ADD, null, uuid,
+                            currencyId, amount, null, newBalance));
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
                 }
+                return newBalance;
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.WARNING, "Failed atomic add for " + uuid, e);
                 cache.invalidate(uuid, currencyId);
             }
+            return BalanceCache.REJECTED;
+        }, BalanceCache.REJECTED, () -> cache.invalidate(uuid, currencyId)).thenApply(newBalance -> {
+            if (newBalance != BalanceCache.REJECTED) {
+                rememberName(uuid, playerName);
+                publishCommitted(uuid, playerName, currencyId, amount, newBalance, false);
+            }
+            return newBalance;
+        });
+    }
+
+    /**
+     * Adds to a cached balance in memory and journals the change, which the
+     * write-behind flusher persists and retries until it is stored. Never
+     * touches the database on the calling thread. Only available in
+     * write-behind mode.
+     *
+     * @return the new balance, NaN if the player is not cached or write-behind
+     *         is off, or -1.0 if the amount is out of range.
+     */
+    public double addCachedBalance(UUID uuid, String currencyId, double amount) {
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
             return -1.0;
-        }, executor);
+        }
+        if (journal == null) {
+            return Double.NaN;
+        }
+        String playerName = org.bukkit.Bukkit.getOfflinePlayer(uuid).getName();
+        return toDouble(applyToLedger(uuid, playerName, currencyId, units, false));
+    }
+
+    /**
+     * Removes from a cached balance in memory if it covers the amount, and
+     * journals the change like {@link #addCachedBalance(UUID, String, double)}.
+     *
+     * @return the new balance, NaN if the player is not cached or write-behind
+     *         is off, or -1.0 if insufficient funds.
+     */
+    public double removeCachedBalance(UUID uuid, String currencyId, double amount) {
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
+            return -1.0;
+        }
+        if (journal == null) {
+            return Double.NaN;
+        }
+        String playerName = org.bukkit.Bukkit.getOfflinePlayer(uuid).getName();
+        return toDouble(applyToLedger(uuid, playerName, currencyId, -units, true));
+    }
+
+    /**
+     * Gets the lock guarding a (player, currency) key of the write-behind
+     * ledger. The cache update and the journal record must happen under it so
+     * the journal can never end up with an older value than the cache.
+     */
+    private Object ledgerLock(UUID uuid, String currencyId) {
+        int h = uuid.hashCode() * 31 + currencyId.hashCode();
+        return ledgerLocks[(h ^ (h >>> 16)) & (ledgerLocks.length - 1)];
+    }
+
+    /**
+     * Applies a delta to the in-memory ledger and journals the result.
+     *
+     * @param requireFunds whether a negative delta must be covered by the balance.
+     * @return the new balance, {@link BalanceCache#ABSENT} if the key is not
+     *         cached, or {@link BalanceCache#REJECTED} if insufficient funds or
+     *         overflow.
+     */
+    private long applyToLedger(UUID uuid, String playerName, String currencyId, long delta,
+            boolean requireFunds) {
+        synchronized (ledgerLock(uuid, currencyId)) {
+            long updated = requireFunds && delta < 0
+                    ? cache.subtractIfSufficient(uuid, currencyId, -delta)
+                    : cache.addIfPresent(uuid, currencyId, delta);
+            if (updated != BalanceCache.ABSENT && updated != BalanceCache.REJECTED) {
+                updateLeaderboard(uuid, playerName, currencyId, updated);
+                journal.record(uuid, playerName, currencyId, updated);
+                journal.record(delta < 0
+                        ? TransactionLedger.entry(TransactionLedger.REMOVE, uuid, null, currencyId, -delta, updated, null)
+                        : TransactionLedger.entry(TransactionLedger.ADD, null, uuid, currencyId, delta, null, updated));
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Runs a ledger operation, loading the key into the cache first if needed.
+     * The load is tried once: one that fails or is skipped during a backoff
+     * leaves the key uncached, and the operation is then refused.
+     *
+     * @return the operation's result, or {@link BalanceCache#REJECTED} if the
+     *         key could not be loaded.
+     */
+    private CompletableFuture<Long> onLedger(UUID uuid, String currencyId, LongSupplier operation) {
+        long result = operation.getAsLong();
+        if (result != BalanceCache.ABSENT) {
+            return CompletableFuture.completedFuture(result);
+        }
+        return getUnits(uuid, currencyId).thenApply(loaded -> {
+            long retried = operation.getAsLong();
+            return retried != BalanceCache.ABSENT ? retried : BalanceCache.REJECTED;
+        });
     }
 
     /**
      * Removes amount from current balance if sufficient funds.
+     * The check and the debit happen atomically: in one conditional UPDATE when
+     * writing through, or under the key's ledger lock in write-behind mode.
+     *
+     * @return the new balance, or -1.0 if insufficient funds.
      */
     public CompletableFuture<Double> removeBalance(UUID uuid, String currencyId, double amount) {
-        return getBalance(uuid, currencyId).thenCompose(current -> {
-            if (current < amount) {
-                return CompletableFuture.completedFuture(-1.0);
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
+            return CompletableFuture.completedFuture(-1.0);
+        }
+        return removeUnits(uuid, currencyId, units).thenApply(PlayerDataDAO::toDouble);
+    }
+
+    /**
+     * Removes storage units from the current balance if sufficient funds.
+     *
+     * @return the new balance, or {@link BalanceCache#REJECTED} if insufficient
+     *         funds or on failure.
+     */
+    public CompletableFuture<Long> removeUnits(UUID uuid, String currencyId, long amount) {
+        if (journal != null) {
+            String playerName = org.bukkit.Bukkit.getOfflinePlayer(uuid).getName();
+            return onLedger(uuid, currencyId, () -> applyToLedger(uuid, playerName, currencyId, -amount, true));
+        }
+        return debitInDatabase(uuid, currencyId, amount);
+    }
+
+    /**
+     * Debits the database only if the balance covers the amount, in a single
+     * conditional UPDATE. SQLite reads the new balance back with RETURNING;
+     * MySQL/MariaDB (no UPDATE ... RETURNING) read it on the same connection
+     * inside the transaction that holds the row lock.
+     *
+     * @return the new balance, or {@link BalanceCache#REJECTED} if insufficient
+     *         funds or on failure.
+     */
+    private CompletableFuture<Long> debitInDatabase(UUID uuid, String currencyId, long amount) {
+        String playerName = org.bukkit.Bukkit.getOfflinePlayer(uuid).getName();
+        return writeAsync(connection -> {
+            try {
+                long newBalance;
+                connection.setAutoCommit(false);
+                try {
+                    newBalance = debitRow(connection, uuid, playerName, currencyId, amount);
+                    if (newBalance != BalanceCache.REJECTED) {
+                        recordLedger(connection, TransactionLedger.entry(TransactionLedger.REMOVE, uuid, null,
+                                currencyId, amount, newBalance, null));
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+
+                return newBalance;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed atomic debit for " + uuid, e);
+                cache.invalidate(uuid, currencyId);
+            }
+            return BalanceCache.REJECTED;
+        }, BalanceCache.REJECTED, () -> cache.invalidate(uuid, currencyId)).thenApply(newBalance -> {
+            if (newBalance != BalanceCache.REJECTED) {
+                publishCommitted(uuid, playerName, currencyId, -amount, newBalance, false);
+            }
+            return newBalance;
+        });
+    }
+
+    /**
+     * Runs the conditional debit for one row on the given connection. A player
+     * without a row is debited from the start balance. Transaction boundaries
+     * are left to the caller.
+     *
+     * @return the new balance, or {@link BalanceCache#REJECTED} if insufficient
+     *         funds.
+     */
+    private long debitRow(Connection connection, UUID uuid, String playerName, String currencyId, long amount)
+            throws SQLException {
+        migrator.copyPlayer(connection, uuid);
+        long newBalance = conditionalDebit(connection, uuid, currencyId, amount);
+        if (newBalance == BalanceCache.ABSENT) {
+            // No row: the player still has the start balance
+            newBalance = debitMissingRow(connection, uuid, playerName, currencyId, amount);
+            if (newBalance == BalanceCache.ABSENT) {
+                // Lost an insert race, the row exists now
+                newBalance = conditionalDebit(connection, uuid, currencyId, amount);
+            }
+        }
+        return newBalance == BalanceCache.ABSENT ? BalanceCache.REJECTED : newBalance;
+    }
+
+    /**
+     * @return the new balance, {@link BalanceCache#REJECTED} if the row exists
+     *         but does not cover the amount, or {@link BalanceCache#ABSENT} if
+     *         there is no row.
+     */
+    private long conditionalDebit(Connection connection, UUID uuid, String currencyId, long amount)
+            throws SQLException {
+        if (!isMySQL()) {
+            try (PreparedStatement debit = connection.prepareStatement(SQL_DEBIT_RETURNING)) {
+                debit.setLong(1, amount);
+                debit.setBytes(2, SchemaMigrator.uuidToBytes(uuid));
+                debit.setString(3, currencyId);
+                debit.setLong(4, amount);
+                try (ResultSet rs = debit.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+            return rowExists(connection, uuid, currencyId) ? BalanceCache.REJECTED : BalanceCache.ABSENT;
+        }
+
+        try (PreparedStatement debit = connection.prepareStatement(SQL_DEBIT)) {
+            debit.setLong(1, amount);
+            debit.setBytes(2, SchemaMigrator.uuidToBytes(uuid));
+            debit.setString(3, currencyId);
+            debit.setLong(4, amount);
+            if (debit.executeUpdate() == 0) {
+                return rowExists(connection, uuid, currencyId) ? BalanceCache.REJECTED : BalanceCache.ABSENT;
+            }
+        }
+        return selectBalance(connection, uuid, currencyId);
+    }
+
+    /**
+     * Creates the row for a player without one, if the start balance covers the
+     * amount.
+     *
+     * @return the new balance, {@link BalanceCache#REJECTED} if insufficient
+     *         funds, or {@link BalanceCache#ABSENT} if the row was created
+     *         concurrently.
+     */
+    private long debitMissingRow(Connection connection, UUID uuid, String playerName, String currencyId,
+            long amount) throws SQLException {
+        long start = startUnits(currencyId);
+        if (start < amount) {
+            return BalanceCache.REJECTED;
+        }
+        return insertIfAbsent(connection, uuid, playerName, currencyId, start - amount)
+                ? start - amount
+                : BalanceCache.ABSENT;
+    }
+
+    /**
+     * Adds to one row on the given connection, creating it from the start
+     * balance if needed. The player name is only written when it differs from
+     * the last one committed in this session; the caller records it with
+     * {@link #rememberName(UUID, String)} once the write commits. Transaction
+     * boundaries are left to the caller.
+     *
+     * @return the new balance.
+     */
+    private long creditRow(Connection connection, UUID uuid, String playerName, String currencyId, long amount)
+            throws SQLException {
+        migrator.copyPlayer(connection, uuid);
+        boolean writeName = playerName != null && !playerName.equals(knownNames.get(uuid));
+        if (!isMySQL()) {
+            try (PreparedStatement upsert = connection.prepareStatement(
+                    writeName ? SQL_UPSERT_ADD_NAME_RETURNING_SQLITE : SQL_UPSERT_ADD_RETURNING_SQLITE)) {
+                bindUpsertAdd(upsert, uuid, playerName, currencyId, amount);
+                try (ResultSet rs = upsert.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        try (PreparedStatement upsert = connection.prepareStatement(
+                writeName ? SQL_UPSERT_ADD_NAME : SQL_UPSERT_ADD)) {
+            bindUpsertAdd(upsert, uuid, playerName, currencyId, amount);
+            upsert.executeUpdate();
+        }
+        return selectBalance(connection, uuid, currencyId);
+    }
+
+    /**
+     * Records a player name as stored, after the write that stored it has
+     * committed. A rolled back write leaves it unknown, so the next credit
+     * writes it again.
+     */
+    private void rememberName(UUID uuid, String playerName) {
+        if (playerName != null) {
+            knownNames.put(uuid, playerName);
+        }
+    }
+
+    private void bindUpsertAdd(PreparedStatement upsert, UUID uuid, String playerName, String currencyId,
+            long amount) throws SQLException {
+        upsert.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+        upsert.setString(2, playerName);
+        upsert.setString(3, currencyId);
+        upsert.setLong(4, startUnits(currencyId) + amount);
+        upsert.setLong(5, amount);
+    }
+
+    /**
+     * @return true if the row was inserted, false if it already existed.
+     */
+    private boolean insertIfAbsent(Connection connection, UUID uuid, String playerName, String currencyId,
+            long balance) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                isMySQL() ? SQL_INSERT_IGNORE_BALANCE : SQL_INSERT_IGNORE_BALANCE_SQLITE)) {
+            insert.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+            insert.setString(2, playerName);
+            insert.setString(3, currencyId);
+            insert.setLong(4, balance);
+            return insert.executeUpdate() > 0;
+        }
+    }
+
+    private long startUnits(String currencyId) {
+        Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
+        return currency != null ? Money.toStorageUnits(currency.getStartBalance()) : 0L;
+    }
+
+    /**
+     * Moves an amount between two players atomically.
+     *
+     * @see #transferUnits(UUID, UUID, String, long)
+     */
+    public CompletableFuture<TransferResult> transfer(UUID from, UUID to, String currencyId, double amount) {
+        long units = toUnits(amount);
+        if (units == BalanceCache.REJECTED) {
+            return CompletableFuture.completedFuture(TransferResult.FAILED);
+        }
+        return transferUnits(from, to, currencyId, units);
+    }
+
+    /**
+     * Moves an amount in storage units between two players atomically. In
+     * write-through mode the debit and the credit run in one transaction on one
+     * connection; in write-behind mode both ledger keys are updated under their
+     * locks. Rows and locks are always taken in UUID order, so opposite
+     * transfers cannot deadlock.
+     *
+     * @return the outcome; unsuccessful if the sender cannot cover the amount
+     *         or the transaction failed.
+     */
+    public CompletableFuture<TransferResult> transferUnits(UUID from, UUID to, String currencyId, long amount) {
+        if (from.equals(to) || amount <= 0) {
+            return CompletableFuture.completedFuture(TransferResult.FAILED);
+        }
+
+        String fromName = org.bukkit.Bukkit.getOfflinePlayer(from).getName();
+        String toName = org.bukkit.Bukkit.getOfflinePlayer(to).getName();
+
+        if (journal != null) {
+            return getUnits(from, currencyId)
+                    .thenCombine(getUnits(to, currencyId), (a, b) -> null)
+                    .thenApply(loaded -> transferOnLedger(from, fromName, to, toName, currencyId, amount));
+        }
+
+        return writeAsync(connection -> {
+            boolean fromFirst = from.compareTo(to) < 0;
+            try {
+                long fromBalance;
+                long toBalance;
+                connection.setAutoCommit(false);
+                try {
+                    if (fromFirst) {
+                        fromBalance = debitRow(connection, from, fromName, currencyId, amount);
+                        toBalance = fromBalance == BalanceCache.REJECTED ? 0
+                                : creditRow(connection, to, toName, currencyId, amount);
+                    } else {
+                        toBalance = creditRow(connection, to, toName, currencyId, amount);
+                        fromBalance = debitRow(connection, from, fromName, currencyId, amount);
+                    }
+
+                    if (fromBalance == BalanceCache.REJECTED) {
+                        connection.rollback();
+                        return TransferResult.FAILED;
+                    }
+                    recordLedger(connection, TransactionLedger.entry(TransactionLedger.TRANSFER, from, to,
+                            currencyId, amount, fromBalance, toBalance));
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+
+                return new TransferResult(true, fromBalance, toBalance);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed transfer from " + from + " to " + to, e);
+                cache.invalidate(from, currencyId);
+                cache.invalidate(to, currencyId);
             }
-            return addBalance(uuid, currencyId, -amount);
+            return TransferResult.FAILED;
+        }, TransferResult.FAILED, () -> {
+            cache.invalidate(from, currencyId);
+            cache.invalidate(to, currencyId);
+        }).thenApply(result -> {
+            if (result.success()) {
+                rememberName(to, toName);
+                publishCommitted(from, fromName, currencyId, -amount, result.fromBalance(), false);
+                publishCommitted(to, toName, currencyId, amount, result.toBalance(), false);
+            }
+            return result;
         });
     }
 
+    /**
+     * Moves the amount between two cached balances. Fails if either key is
+     * not cached: its load failed or was skipped during a backoff, or it was
+     * evicted right after loading.
+     */
+    private TransferResult transferOnLedger(UUID from, String fromName, UUID to, String toName,
+            String currencyId, long amount) {
+        Object fromLock = ledgerLock(from, currencyId);
+        Object toLock = ledgerLock(to, currencyId);
+        boolean fromFirst = from.compareTo(to) < 0;
+
+        synchronized (fromFirst ? fromLock : toLock) {
+            synchronized (fromFirst ? toLock : fromLock) {
+                if (cache.contains(from, currencyId) && cache.contains(to, currencyId)) {
+                    long fromBalance = cache.subtractIfSufficient(from, currencyId, amount);
+                    if (fromBalance == BalanceCache.REJECTED) {
+                        return TransferResult.FAILED;
+                    }
+                    long toBalance = cache.addIfPresent(to, currencyId, amount);
+                    if (toBalance == BalanceCache.REJECTED) {
+                        // Receiver would overflow: undo the debit
+                        cache.addIfPresent(from, currencyId, amount);
+                        return TransferResult.FAILED;
+                    }
+                    updateLeaderboard(from, fromName, currencyId, fromBalance);
+                    updateLeaderboard(to, toName, currencyId, toBalance);
+                    journal.record(from, fromName, currencyId, fromBalance);
+                    journal.record(to, toName, currencyId, toBalance);
+                    journal.record(TransactionLedger.entry(TransactionLedger.TRANSFER, from, to, currencyId,
+                            amount, fromBalance, toBalance));
+                    return new TransferResult(true, fromBalance, toBalance);
+                }
+            }
+        }
+
+        return TransferResult.FAILED;
+    }
+
+    private boolean rowExists(Connection connection, UUID uuid, String currencyId) throws SQLException {
+        return selectBalance(connection, uuid, currencyId) != BalanceCache.ABSENT;
+    }
+
+    /**
+     * @return the stored balance, or {@link BalanceCache#ABSENT} if there is no
+     *         row.
+     */
+    private long selectBalance(Connection connection, UUID uuid, String currencyId) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_BALANCE)) {
+            select.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+            select.setString(2, currencyId);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : BalanceCache.ABSENT;
+            }
+        }
+    }
+
+    /**
+     * Applies a committed write-through change to the cache and the
+     * leaderboard and sends it to the other servers. Runs after the commit, so
+     * none of it holds up the write transaction (on SQLite, the group
+     * transaction of every write queued with it).
+     *
+     * @param set whether the change set the balance rather than adding to it.
+     */
+    private void publishCommitted(UUID uuid, String playerName, String currencyId, long delta, long balance,
+            boolean set) {
+        cache.applyCommitted(uuid, currencyId, delta, balance);
+        updateLeaderboard(uuid, playerName, currencyId, balance);
+        if (sync != null) {
+            if (set) {
+                sync.publishSet(uuid, currencyId, delta, balance);
+            } else {
+                sync.publishDelta(uuid, currencyId, delta, balance);
+            }
+        }
+    }
+
+    private void updateLeaderboard(UUID uuid, String playerName, String currencyId, long units) {
+        leaderboard.update(uuid, playerName, currencyId, units);
+    }
+
+    /**
+     * @return the amount in storage units, or {@link BalanceCache#REJECTED} if it
+     *         is out of range.
+     */
+    private static long toUnits(double amount) {
+        try {
+            return Money.toStorageUnits(amount);
+        } catch (ArithmeticException e) {
+            return BalanceCache.REJECTED;
+        }
+    }
+
+    // Maps unit results to the double contract: NaN if not cached, -1.0 if refused
+    private static double toDouble(long units) {
+        if (units == BalanceCache.ABSENT) {
+            return Double.NaN;
+        }
+        if (units == BalanceCache.REJECTED) {
+            return -1.0;
+        }
+        return Money.storageUnitsToDouble(units);
+    }
+
+    private boolean isMySQL() {
+        return plugin.getConfig().getString("database.type", "SQLITE").equalsIgnoreCase("MYSQL");
+    }
+
     /**
      * Gets top balances for a currency (with local caching).
      * Defaults offset to 0.
@@ -295,17 +1290,25 @@ public class PlayerDataDAO {
     public CompletableFuture<java.util.List<java.util.Map.Entry<java.util.UUID, Double>>> getTopBalances(
             String currencyId, int limit, int offset) {
 
+        if (leaderboard.isReady()) {
+            java.util.List<java.util.Map.Entry<java.util.UUID, Double>> topList = new java.util.ArrayList<>();
+            for (LeaderboardCache.Entry entry : leaderboard.page(currencyId, offset, limit)) {
+                topList.add(java.util.Map.entry(entry.uuid(), entry.balance()));
+            }
+            return CompletableFuture.completedFuture(topList);
+        }
+
         String cacheKey = currencyId + "-" + limit + "-" + offset;
         CachedTop cached = topCache.get(cacheKey);
         if (cached != null && System.currentTimeMillis() - cached.timestamp < 60000) { // 60s cache
             return CompletableFuture.completedFuture(cached.list);
         }
 
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             java.util.List<java.util.Map.Entry<java.util.UUID, Double>> topList = new java.util.ArrayList<>();
             String sql = "SELECT player_uuid, player_name, balance FROM cream_balances WHERE currency_id = ? ORDER BY balance DESC LIMIT ? OFFSET ?";
 
-            try (Connection connection = plugin.getDatabase().getConnection();
+            try (Connection connection = plugin.getDatabase().getReadConnection();
                     PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, currencyId);
                 statement.setInt(2, limit);
@@ -313,8 +1316,8 @@ public class PlayerDataDAO {
 
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
-                        java.util.UUID uuid = java.util.UUID.fromString(resultSet.getString("player_uuid"));
-                        double balance = resultSet.getDouble("balance");
+                        java.util.UUID uuid = SchemaMigrator.uuidFromBytes(resultSet.getBytes("player_uuid"));
+                        double balance = Money.storageUnitsToDouble(resultSet.getLong("balance"));
                         topList.add(java.util.Map.entry(uuid, balance));
                     }
                 }
@@ -324,7 +1327,7 @@ public class PlayerDataDAO {
             }
 
             return topList;
-        }, executor);
+        });
     }
 
     /**
@@ -334,13 +1337,19 @@ public class PlayerDataDAO {
     public CompletableFuture<java.util.List<TopBalanceEntry>> getTopBalancesWithNames(
             String currencyId, int limit, int offset) {
 
-        String cacheKey = "named-" + currencyId + "-" + limit + "-" + offset;
+        if (leaderboard.isReady()) {
+            java.util.List<TopBalanceEntry> topList = new java.util.ArrayList<>();
+            for (LeaderboardCache.Entry entry : leaderboard.page(currencyId, offset, limit)) {
+                topList.add(new TopBalanceEntry(entry.uuid(), entry.name(), entry.balance()));
+            }
+            return CompletableFuture.completedFuture(topList);
+        }
 
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             java.util.List<TopBalanceEntry> topList = new java.util.ArrayList<>();
             String sql = "SELECT player_uuid, player_name, balance FROM cream_balances WHERE currency_id = ? ORDER BY balance DESC LIMIT ? OFFSET ?";
 
-            try (Connection connection = plugin.getDatabase().getConnection();
+            try (Connection connection = plugin.getDatabase().getReadConnection();
                     PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, currencyId);
                 statement.setInt(2, limit);
@@ -348,9 +1357,9 @@ public class PlayerDataDAO {
 
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
-                        java.util.UUID uuid = java.util.UUID.fromString(resultSet.getString("player_uuid"));
+                        java.util.UUID uuid = SchemaMigrator.uuidFromBytes(resultSet.getBytes("player_uuid"));
                         String name = resultSet.getString("player_name");
-                        double balance = resultSet.getDouble("balance");
+                        double balance = Money.storageUnitsToDouble(resultSet.getLong("balance"));
                         topList.add(new TopBalanceEntry(uuid, name, balance));
                     }
                 }
@@ -359,27 +1368,177 @@ public class PlayerDataDAO {
             }
 
             return topList;
-        }, executor);
+        });
+    }
+
+    /**
+     * Gets the leaderboard position of a player.
+     *
+     * @return the 1-based rank, or 0 if the player has no stored balance or the
+     *         leaderboard is not loaded yet.
+     */
+    public int getRank(UUID uuid, String currencyId) {
+        return leaderboard.rank(uuid, currencyId);
     }
 
     /**
-     * Gets the total circulating supply of a currency.
+     * Gets the total circulating supply of a currency. Served from the running
+     * total once the leaderboard is loaded, from the database before that.
      */
     public CompletableFuture<Double> getTotalBalance(String currencyId) {
-        return CompletableFuture.supplyAsync(() -> {
+        if (leaderboard.isReady()) {
+            return CompletableFuture.completedFuture(Money.storageUnitsToDouble(leaderboard.supply(currencyId)));
+        }
+        return supplyAsync(() -> {
             String sql = "SELECT SUM(balance) FROM cream_balances WHERE currency_id = ?";
-            try (Connection connection = plugin.getDatabase().getConnection();
+            try (Connection connection = plugin.getDatabase().getReadConnection();
                     PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.setString(1, currencyId);
                 try (ResultSet rs = statement.executeQuery()) {
                     if (rs.next()) {
-                        return rs.getDouble(1);
+                        return rs.getDouble(1) / Money.storageFactor();
                     }
                 }
             } catch (SQLException e) {
                 plugin.getLogger().log(Level.WARNING, "Failed to get total balance for " + currencyId, e);
             }
             return 0.0;
+        });
+    }
+
+    /**
+     * Gets the number of players with a positive balance of a currency, or -1
+     * if the leaderboard is not loaded yet.
+     */
+    public long getHolderCount(String currencyId) {
+        return leaderboard.isReady() ? leaderboard.holders(currencyId) : -1;
+    }
+
+    /**
+     * Compares the running supply and holder totals with the database and
+     * corrects drift. A difference is only applied once the same one is seen on
+     * two checks in a row, so changes in flight (or waiting in the journal) are
+     * not mistaken for drift.
+     */
+    private void reconcileSupply() {
+        if (!leaderboard.isReady() || !schemaReady.isDone() || schemaReady.isCompletedExceptionally()) {
+            return;
+        }
+
+        java.util.Map<String, long[]> totals = new java.util.HashMap<>();
+        try (Connection connection = plugin.getDatabase().getReadConnection();
+                PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SUPPLY);
+                ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                totals.put(rs.getString(1), new long[] { rs.getLong(2), rs.getLong(3) });
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to check currency supply totals", e);
+            return;
+        }
+
+        for (Currency currency : plugin.getCurrencyManager().getCurrencies().values()) {
+            String currencyId = currency.getId();
+            long[] stored = totals.getOrDefault(currencyId, new long[2]);
+            long[] drift = { stored[0] - leaderboard.supply(currencyId), stored[1] - leaderboard.holders(currencyId) };
+            long[] previous = supplyDrift.put(currencyId, drift);
+
+            if ((drift[0] != 0 || drift[1] != 0) && java.util.Arrays.equals(drift, previous)) {
+                leaderboard.adjust(currencyId, drift[0], drift[1]);
+                supplyDrift.remove(currencyId);
+                plugin.getLogger().info("Corrected " + currencyId + " supply by "
+                        + Money.storageUnitsToDouble(drift[0]) + " and holders by " + drift[1] + ".");
+            }
+        }
+    }
+
+    private void snapshotIfDue() {
+        // A snapshot taken during the schema upgrade would miss the balances not copied yet
+        if (!schemaReady.isDone() || schemaReady.isCompletedExceptionally() || migrator.isCopying()) {
+            return;
+        }
+        long intervalMs = Math.max(1, plugin.getConfig().getLong("logging.ledger.snapshot-interval-minutes", 60))
+                * 60_000L;
+        try {
+            long latest;
+            try (Connection connection = plugin.getDatabase().getReadConnection()) {
+                latest = recovery.latestSnapshotTime(connection);
+            }
+            if (latest >= 0 && System.currentTimeMillis() - latest < intervalMs) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            BalanceRecovery.Snapshot snapshot = withLedgerInStep(connection -> recovery.snapshot(connection,
+                    plugin.getConfig().getInt("logging.ledger.snapshots-kept", 24)));
+            plugin.getLogger().info("Took balance snapshot #" + snapshot.id() + " (" + snapshot.balances()
+                    + " balances) in " + (System.currentTimeMillis() - start) + "ms.");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to take a balance snapshot", e);
+        }
+    }
+
+    /**
+     * Runs a task on the write connection once every balance change made so
+     * far is stored with its ledger row. In write-behind mode the journal is
+     * flushed first and holds its flusher off until the task is done; the
+     * task itself must keep other writers out (see {@link BalanceRecovery}).
+     */
+    private <T> T withLedgerInStep(Database.SqlTask<T> task) throws SQLException {
+        if (journal != null) {
+            return journal.whileFlushed(task);
+        }
+        try (Connection connection = plugin.getDatabase().getConnection()) {
+            return task.run(connection);
+        }
+    }
+
+    /**
+     * Rebuilds the stored balances from the newest complete snapshot taken at
+     * or before the given time, replaying the transaction ledger after it.
+     * Caches and the leaderboard are reloaded afterwards. Completes with null
+     * if there is no such snapshot.
+     *
+     * @throws IllegalStateException if the ledger is disabled.
+     */
+    public CompletableFuture<RebuildResult> rebuildBalances(long before) {
+        if (recovery == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The transaction ledger is disabled"));
+        }
+        return schemaReady.thenApplyAsync(ready -> {
+            if (migrator.isCopying()) {
+                plugin.getLogger().warning("Cannot rebuild balances while they are still copied to the new schema.");
+                throw new IllegalStateException("Balances are still being copied to the new schema");
+            }
+            long start = System.currentTimeMillis();
+            try {
+                BalanceRecovery.Rebuild rebuild = withLedgerInStep(connection -> {
+                    BalanceRecovery.Rebuild rebuilt = recovery.rebuild(connection, before);
+                    if (rebuilt != null) {
+                        cache.clear();
+                        topCache.clear();
+                        supplyDrift.clear();
+                        leaderboard.clear();
+                        seedLeaderboard(connection);
+                    }
+                    return rebuilt;
+                });
+                if (rebuild == null) {
+                    plugin.getLogger().warning("No complete balance snapshot taken before " + new java.util.Date(before)
+                            + "; balances were not rebuilt.");
+                    return null;
+                }
+
+                RebuildResult result = new RebuildResult(rebuild.snapshot().createdAt(),
+                        rebuild.snapshot().balances(), rebuild.transactions(), rebuild.balances(),
+                        System.currentTimeMillis() - start);
+                plugin.getLogger().info("Rebuilt " + result.balances() + " balances from snapshot #"
+                        + rebuild.snapshot().id() + " and " + result.transactions() + " transactions in "
+                        + result.millis() + "ms.");
+                return result;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to rebuild balances from the transaction ledger", e);
+                throw new java.util.concurrent.CompletionException(e);
+            }
         }, executor);
     }
 
@@ -392,8 +1551,8 @@ public class PlayerDataDAO {
             return CompletableFuture.completedFuture(cached);
         }
 
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection connection = plugin.getDatabase().getConnection();
+        return supplyAsync(() -> {
+            try (Connection connection = plugin.getDatabase().getReadConnection();
                     PreparedStatement statement = connection.prepareStatement(SQL_SELECT_SETTINGS)) {
                 statement.setString(1, uuid.toString());
                 try (ResultSet rs = statement.executeQuery()) {
@@ -407,7 +1566,7 @@ public class PlayerDataDAO {
                 plugin.getLogger().log(Level.WARNING, "Failed to get settings for " + uuid, e);
             }
             return false; // Default to enabled
-        }, executor);
+        });
     }
 
     /**
@@ -418,12 +1577,11 @@ public class PlayerDataDAO {
             boolean newValue = !current;
             paymentsDisabledCache.put(uuid, newValue);
 
-            return CompletableFuture.supplyAsync(() -> {
+            return writeAsync(connection -> {
                 String dbType = plugin.getConfig().getString("database.type", "SQLITE");
                 String sql = dbType.equalsIgnoreCase("MYSQL") ? SQL_UPSERT_SETTINGS : SQL_UPSERT_SETTINGS_SQLITE;
 
-                try (Connection connection = plugin.getDatabase().getConnection();
-                        PreparedStatement statement = connection.prepareStatement(sql)) {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
                     statement.setString(1, uuid.toString());
                     statement.setBoolean(2, newValue);
                     statement.executeUpdate();
@@ -433,15 +1591,81 @@ public class PlayerDataDAO {
                     paymentsDisabledCache.remove(uuid); // Invalidate cache on error
                     return current;
                 }
-            }, executor);
+            }, current, () -> paymentsDisabledCache.remove(uuid));
         });
     }
 
+    /**
+     * Whether the tables are ready, so database operations run right away
+     * instead of waiting for the schema migration.
+     */
+    public boolean isReady() {
+        return schemaReady.isDone() && !schemaReady.isCompletedExceptionally();
+    }
+
+    /**
+     * Whether the current thread belongs to the database pool. Code running
+     * there (including callbacks chained on DAO futures) must never block on
+     * another DAO future: the task it waits for may be queued behind it, and
+     * a burst of such waits starves the whole pool.
+     */
+    public boolean isDatabaseThread() {
+        return DATABASE_THREAD.get();
+    }
+
+    /**
+     * Drops everything held in memory for a player, e.g. when they leave.
+     */
+    public void unloadPlayer(UUID uuid) {
+        cache.invalidatePlayer(uuid);
+        knownNames.remove(uuid);
+    }
+
+    public LeaderboardCache getLeaderboard() {
+        return leaderboard;
+    }
+
     public BalanceCache getCache() {
         return cache;
     }
 
+    /**
+     * Gets the write-behind journal, or null if write-behind mode is disabled.
+     */
+    public BalanceJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Gets the transaction ledger, or null if it is disabled.
+     */
+    public TransactionLedger getLedger() {
+        return ledger;
+    }
+
     public void shutdown() {
+        reconcileTask.cancel();
+        if (rescanTask != null) {
+            rescanTask.cancel();
+        }
+        if (snapshotTask != null) {
+            snapshotTask.cancel();
+        }
+        if (sync != null) {
+            sync.shutdown();
+        }
+        // Let in-flight DB tasks finish before the final journal flush
         executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+
+        if (journal != null) {
+            journal.shutdown();
+        }
     }
 }
@@ -1,21 +1,74 @@
 package com.agevate.creamcurrency.database;
 
 import com.agevate.creamcurrency.CreamCurrency;
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 /**
- * Optimized SQLite database connection using HikariCP.
+ * SQLite database with a single writer and a small pool of readers.
+ * <p>
+ * SQLite lets one connection write at a time, so a pool of writers only
+ * queues on the file lock. Here one connection does all the writing. Write
+ * tasks ({@link #write}) are queued for one writer thread, which runs as many
+ * as are waiting (up to {@code database.sqlite.max-group-size}) in one
+ * transaction, each inside a savepoint so a failing task only undoes itself.
+ * Their futures complete once that transaction is committed. Code that needs
+ * the write connection itself borrows it from {@link #getConnection()} and
+ * holds it exclusively until it is closed.
+ * <p>
+ * Reads use separate read-only connections, which run alongside the writer in
+ * WAL mode. PRAGMAs are executed on every connection when it is opened, since
+ * most of them only apply to the connection they are run on. Connections are
+ * kept open and each keeps its prepared statements ({@link StatementCache}),
+ * so repeated queries are not compiled again; a connection that stops working
+ * is replaced.
  */
 public class SQLiteDatabase extends Database {
 
-    private final HikariDataSource dataSource;
+    private static final long ACQUIRE_TIMEOUT_MS = 30000;
+
+    // Queued by close() to stop the writer thread
+    private static final PendingWrite<Void> STOP = new PendingWrite<>(null, null, null);
+
+    private final String url;
+    private final int busyTimeoutMs;
+    private final int cacheSize;
+    private final int maxGroupSize;
+    private final int statementCacheSize;
+
+    // Guards the writer connection; held by the writer thread per group and by borrowers
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Pooled writer;
+
+    private final BlockingQueue<PendingWrite<?>> writes = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+
+    private final Semaphore readPermits;
+    private final BlockingQueue<Pooled> idleReaders = new LinkedBlockingQueue<>();
+
+    private volatile boolean closed;
 
     public SQLiteDatabase(CreamCurrency plugin) {
         super(plugin);
@@ -33,39 +86,435 @@ public class SQLiteDatabase extends Database {
             plugin.getLogger().log(Level.SEVERE, "Could not create database file!", e);
         }
 
-        HikariConfig config = new HikariConfig();
-        config.setPoolName("CreamCurrency-SQLite");
-        config.setDriverClassName("org.sqlite.JDBC");
-        config.setJdbcUrl("jdbc:sqlite:" + dataFile.getAbsolutePath());
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            plugin.getLogger().log(Level.SEVERE, "SQLite driver not found!", e);
+        }
 
-        // SQLite optimizations
-        config.addDataSourceProperty("journal_mode", "WAL");
-        config.addDataSourceProperty("synchronous", "NORMAL");
-        config.addDataSourceProperty("cache_size", "10000");
-        config.addDataSourceProperty("temp_store", "MEMORY");
+        this.url = "jdbc:sqlite:" + dataFile.getAbsolutePath();
+        this.busyTimeoutMs = Math.max(0, plugin.getConfig().getInt("database.sqlite.busy-timeout-ms", 5000));
+        this.cacheSize = plugin.getConfig().getInt("database.sqlite.cache-size", 10000);
+        this.maxGroupSize = Math.max(1, plugin.getConfig().getInt("database.sqlite.max-group-size", 64));
+        this.statementCacheSize = Math.max(1,
+                plugin.getConfig().getInt("database.sqlite.statement-cache-size", 32));
+        this.readPermits = new Semaphore(Math.max(1, plugin.getConfig().getInt("database.sqlite.read-pool-size", 4)));
 
-        // Connection pool settings (SQLite is single-writer, so keep pool small)
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(2);
-        config.setMaxLifetime(1800000); // 30 minutes
-        config.setIdleTimeout(600000); // 10 minutes
-        config.setConnectionTimeout(30000); // 30 seconds
+        this.writerThread = new Thread(this::runWriter, "CreamCurrency-SQLite-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
 
-        // Disable connection testing for SQLite (faster)
-        config.setConnectionTestQuery(null);
+    /**
+     * Borrows the write connection. Writes queued with {@link #write} wait
+     * until it is closed again; a transaction left open is rolled back then.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire(writeLock, "the SQLite write connection");
+        try {
+            Pooled pooled = writerConnection();
+            return lease(pooled, () -> releaseWriter(pooled.connection()));
+        } catch (SQLException | RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
 
-        this.dataSource = new HikariDataSource(config);
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        try {
+            if (!readPermits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for an SQLite read connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for an SQLite read connection", e);
+        }
+        try {
+            if (closed) {
+                throw new SQLException("The database is closed");
+            }
+            Pooled reader = idleReaders.poll();
+            if (reader == null || reader.connection().isClosed()) {
+                reader = open(true);
+            }
+            Pooled connection = reader;
+            return lease(connection, () -> releaseReader(connection));
+        } catch (SQLException | RuntimeException e) {
+            readPermits.release();
+            throw e;
+        }
     }
 
     @Override
-    public Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+    public <T> CompletableFuture<T> write(SqlTask<T> task, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new SQLException("The database is closed"));
+        } else {
+            writes.add(new PendingWrite<>(task, executor, future));
+        }
+        return future;
+    }
+
+    private void runWriter() {
+        List<PendingWrite<?>> group = new ArrayList<>(maxGroupSize);
+        while (true) {
+            try {
+                group.add(writes.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            writes.drainTo(group, maxGroupSize - 1);
+            boolean stop = group.remove(STOP);
+            runGroup(group);
+            group.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a group of writes in one transaction. Tasks that fail are rolled
+     * back to their savepoint and fail on their own; if the transaction cannot
+     * be committed, every task of the group fails.
+     */
+    private void runGroup(List<PendingWrite<?>> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            Pooled pooled = writerConnection();
+            Connection connection = pooled.connection();
+            connection.setAutoCommit(false);
+            try {
+                for (PendingWrite<?> write : group) {
+                    write.run(pooled);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            discardBrokenWriter();
+            for (PendingWrite<?> write : group) {
+                write.complete(e);
+            }
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+        for (PendingWrite<?> write : group) {
+            write.complete(null);
+        }
+    }
+
+    // Opens the writer on first use and after it broke; call with the write lock held
+    private Pooled writerConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The database is closed");
+        }
+        if (writer == null || writer.connection().isClosed()) {
+            writer = open(false);
+        }
+        return writer;
+    }
+
+    // Call with the write lock held
+    private void discardBrokenWriter() {
+        if (writer != null && !isValid(writer.connection())) {
+            plugin.getLogger().warning("The SQLite write connection stopped working, reconnecting.");
+            closeQuietly(writer.connection());
+            writer = null;
+        }
+    }
+
+    private void releaseWriter(Connection connection) throws SQLException {
+        try {
+            // Only the outermost borrower ends a transaction left open
+            if (writeLock.getHoldCount() == 1 && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void releaseReader(Pooled reader) throws SQLException {
+        Connection connection = reader.connection();
+        boolean reusable = false;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            reusable = !closed && isValid(connection);
+        } finally {
+            readPermits.release();
+            if (reusable) {
+                idleReaders.add(reader);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Pooled open(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.execute("PRAGMA cache_size = " + cacheSize);
+            statement.execute("PRAGMA temp_store = MEMORY");
+            if (readOnly) {
+                statement.execute("PRAGMA query_only = 1");
+            } else {
+                // Stored in the file, and what lets the readers run alongside the writer
+                try (ResultSet rs = statement.executeQuery("PRAGMA journal_mode = WAL")) {
+                    String mode = rs.next() ? rs.getString(1) : null;
+                    if (!"wal".equalsIgnoreCase(mode)) {
+                        plugin.getLogger().warning("SQLite could not switch to WAL mode (journal_mode is " + mode
+                                + "), reads will wait for writes.");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new Pooled(connection, new StatementCache(connection, statementCacheSize));
     }
 
+    private static void acquire(ReentrantLock lock, String what) throws SQLException {
+        try {
+            if (!lock.tryLock(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for " + what);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for " + what, e);
+        }
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to roll back SQLite writes", e);
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close an SQLite connection", e);
+        }
+    }
+
+    /**
+     * Stops the writer after the writes already queued and closes every idle
+     * connection. Readers still borrowed are closed when they are returned.
+     */
     @Override
     public void close() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writes.add(STOP);
+        try {
+            writerThread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        PendingWrite<?> left;
+        while ((left = writes.poll()) != null) {
+            if (left != STOP) {
+                left.complete(new SQLException("The database is closed"));
+            }
+        }
+
+        writeLock.lock();
+        try {
+            if (writer != null) {
+                closeQuietly(writer.connection());
+                writer = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        Pooled reader;
+        while ((reader = idleReaders.poll()) != null) {
+            closeQuietly(reader.connection());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Release {
+        void run() throws SQLException;
+    }
+
+    private static Connection proxy(InvocationHandler handler) {
+        return (Connection) Proxy.newProxyInstance(SQLiteDatabase.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    /**
+     * An open connection with the statements prepared on it.
+     */
+    private record Pooled(Connection connection, StatementCache statements) {
+    }
+
+    private static Object forward(Pooled target, Method method, Object[] args) throws Throwable {
+        // Only the plain overload is cached. The others (generated keys, result
+        // set type or holdability) give statements that behave differently for
+        // the same SQL, so they would need their own cache keys; they are rare
+        // here and are prepared on the connection every time.
+        if (method.getName().equals("prepareStatement") && args.length == 1) {
+            return target.statements().prepare((String) args[0]);
+        }
+        try {
+            return method.invoke(target.connection(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Connection lease(Pooled connection, Release release) {
+        return proxy(new Lease(connection, release));
+    }
+
+    /**
+     * A borrowed connection: closing it hands the connection back.
+     */
+    private static final class Lease implements InvocationHandler {
+        private final Pooled target;
+        private final Release release;
+        private boolean released;
+
+        Lease(Pooled target, Release release) {
+            this.target = target;
+            this.release = release;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release.run();
+                    }
+                    return null;
+                case "isClosed":
+                    return released || target.connection().isClosed();
+                default:
+                    if (released) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    return forward(target, method, args);
+            }
+        }
+    }
+
+    /**
+     * The writer as seen by one task of a group: the task's transaction is the
+     * savepoint around it, so committing is left to the group and rolling back
+     * only undoes the task.
+     */
+    private static final class InGroup implements InvocationHandler {
+        private final Pooled target;
+        private final Savepoint savepoint;
+
+        InGroup(Pooled target, Savepoint savepoint) {
+            this.target = target;
+            this.savepoint = savepoint;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        target.connection().rollback(savepoint);
+                        return null;
+                    }
+                    return forward(target, method, args);
+                default:
+                    return forward(target, method, args);
+            }
+        }
+    }
+
+    private static final class PendingWrite<T> {
+        private final SqlTask<T> task;
+        private final Executor executor;
+        private final CompletableFuture<T> future;
+        private T result;
+        private Throwable error;
+
+        PendingWrite(SqlTask<T> task, Executor executor, CompletableFuture<T> future) {
+            this.task = task;
+            this.executor = executor;
+            this.future = future;
+        }
+
+        void run(Pooled writer) throws SQLException {
+            Connection connection = writer.connection();
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                result = task.run(proxy(new InGroup(writer, savepoint)));
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+                connection.rollback(savepoint);
+            }
+            connection.releaseSavepoint(savepoint);
+        }
+
+        /**
+         * Completes the future on the task's executor, or right here if that
+         * no longer accepts work.
+         *
+         * @param failure why the whole group failed, or null if it committed.
+         */
+        void complete(Throwable failure) {
+            Throwable cause = failure != null ? failure : error;
+            try {
+                executor.execute(() -> finish(cause));
+            } catch (RejectedExecutionException e) {
+                finish(cause);
+            }
+        }
+
+        private void finish(Throwable cause) {
+            if (cause != null) {
+                future.completeExceptionally(cause);
+            } else {
+                future.complete(result);
+            }
         }
     }
 }
@@ -0,0 +1,602 @@
+package com.agevate.creamcurrency.database;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.currency.Money;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Versioned schema migrations for the plugin tables.
+ * <p>
+ * The applied version is stored in {@code cream_schema_version}. Fresh
+ * databases get the latest schema directly; older ones are upgraded one
+ * version at a time.
+ * <ul>
+ * <li>v1: legacy layout (text UUIDs, DOUBLE balances) with the player_name
+ * column.</li>
+ * <li>v2: {@code BINARY(16)} UUIDs, balances stored as a {@code BIGINT} scaled
+ * by {@link #BALANCE_SCALE}, and a {@code (currency_id, balance DESC)} index
+ * for leaderboards.</li>
+ * <li>v3: {@code cream_transactions} ledger, indexed by sender, receiver and
+ * time.</li>
+ * <li>v4: {@code cream_snapshots} and {@code cream_snapshot_balances}, balance
+ * checkpoints that ledger replay starts from.</li>
+ * <li>v5: {@code cream_balance_changes}, the change feed for balance sync
+ * between servers.</li>
+ * <li>v6: {@code cream_snapshots.complete}, set on snapshots the ledger can
+ * be replayed from. Older snapshots stay unusable, the ledger before v6 was
+ * not complete.</li>
+ * </ul>
+ * The upgrade to v2 runs online: the new table replaces the legacy one right
+ * away, and the rows are copied over in the background afterwards (see
+ * {@link #copyLegacyBalances}). Until the copy is done, balances that are not
+ * copied yet are read from the legacy table, and a player's rows are copied
+ * before anything changes them. Rows that cannot be converted are kept in
+ * {@code cream_balances_rejected}, which is reported on every start.
+ */
+public class SchemaMigrator {
+
+    public static final int CURRENT_VERSION = 6;
+
+    // Stored balances keep Money.STORAGE_SCALE decimal places
+    static final long BALANCE_SCALE = Money.storageFactor();
+
+    private static final String SQL_CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS cream_schema_version (version INT NOT NULL)";
+
+    private static final String SQL_CREATE_SETTINGS_TABLE = "CREATE TABLE IF NOT EXISTS cream_player_settings (" +
+            "player_uuid VARCHAR(36) PRIMARY KEY, " +
+            "payments_disabled BOOLEAN NOT NULL DEFAULT 0)";
+
+    private static final String SQL_ADD_NAME_COLUMN_MYSQL = "ALTER TABLE cream_balances ADD COLUMN IF NOT EXISTS player_name VARCHAR(32)";
+    private static final String SQL_ADD_NAME_COLUMN_SQLITE_CHECK = "SELECT COUNT(*) AS cnt FROM pragma_table_info('cream_balances') WHERE name='player_name'";
+
+    private static final String LEGACY_TABLE = "cream_balances_v1_backup";
+
+    // A row value comparison, so both databases seek on the primary key
+    private static final String SQL_SELECT_LEGACY_CHUNK = "SELECT player_uuid, player_name, currency_id, balance FROM "
+            + LEGACY_TABLE + " WHERE (player_uuid, currency_id) > (?, ?) ORDER BY player_uuid, currency_id LIMIT ?";
+
+    private static final String SQL_SELECT_LEGACY_PLAYER = "SELECT player_uuid, player_name, currency_id, balance FROM "
+            + LEGACY_TABLE + " WHERE player_uuid = ?";
+
+    private static final String SQL_SELECT_LEGACY_BALANCE = "SELECT balance FROM " + LEGACY_TABLE
+            + " WHERE player_uuid = ? AND currency_id = ?";
+
+    // Rows already in the new table were copied before or written since, and win
+    private static final String SQL_INSERT_V2 = "INSERT IGNORE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_V2_SQLITE = "INSERT OR IGNORE INTO cream_balances (player_uuid, player_name, currency_id, balance) VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_REJECTED = "INSERT IGNORE INTO cream_balances_rejected (player_uuid, player_name, currency_id, balance, reason) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_REJECTED_SQLITE = "INSERT OR IGNORE INTO cream_balances_rejected (player_uuid, player_name, currency_id, balance, reason) VALUES (?, ?, ?, ?, ?)";
+
+    private final CreamCurrency plugin;
+    private final boolean mysql;
+    private final int chunkSize;
+    // Whether rows of the legacy table still have to be copied
+    private volatile boolean copying;
+
+    public SchemaMigrator(CreamCurrency plugin) {
+        this.plugin = plugin;
+        this.mysql = plugin.getConfig().getString("database.type", "SQLITE").equalsIgnoreCase("MYSQL");
+        this.chunkSize = Math.max(100, plugin.getConfig().getInt("database.migration.chunk-size", 1000));
+    }
+
+    /**
+     * Brings the database up to {@link #CURRENT_VERSION}, except for copying
+     * the balances of a legacy table. If that is still to do, the tables are
+     * usable but the version stays below 2 until {@link #copyLegacyBalances}
+     * has finished.
+     *
+     * @return whether legacy balances still have to be copied.
+     */
+    public boolean migrate(Connection connection) throws SQLException {
+        execute(connection, SQL_CREATE_VERSION_TABLE);
+        execute(connection, SQL_CREATE_SETTINGS_TABLE);
+
+        int version = readVersion(connection);
+        if (version < 0) {
+            if (!tableExists(connection, "cream_balances")) {
+                createBalancesTable(connection, "cream_balances");
+                createTransactionsTable(connection);
+                createSnapshotTables(connection);
+                createChangesTable(connection);
+                writeVersion(connection, CURRENT_VERSION);
+                return false;
+            }
+            // Tables from before versioning
+            version = 0;
+        }
+
+        if (version < 1) {
+            migrateToV1(connection);
+            writeVersion(connection, 1);
+        }
+        if (version < 2) {
+            swapToV2(connection);
+            // The later tables don't depend on the copy, the DAO needs them right away
+            createMissingTables(connection);
+            reportRejected(connection);
+            copying = true;
+            return true;
+        }
+        migrateAfterV2(connection, version);
+        reportRejected(connection);
+        return false;
+    }
+
+    private void migrateAfterV2(Connection connection, int version) throws SQLException {
+        if (version < 3) {
+            if (!tableExists(connection, "cream_transactions")) {
+                createTransactionsTable(connection);
+            }
+            writeVersion(connection, 3);
+        }
+        if (version < 4) {
+            if (!tableExists(connection, "cream_snapshots")) {
+                createSnapshotTables(connection);
+            }
+            writeVersion(connection, 4);
+        }
+        if (version < 5) {
+            if (!tableExists(connection, "cream_balance_changes")) {
+                createChangesTable(connection);
+            }
+            writeVersion(connection, 5);
+        }
+        if (version < 6) {
+            if (!columnExists(connection, "cream_snapshots", "complete")) {
+                execute(connection, "ALTER TABLE cream_snapshots ADD COLUMN complete BOOLEAN NOT NULL DEFAULT 0");
+            }
+            writeVersion(connection, 6);
+        }
+    }
+
+    private void createMissingTables(Connection connection) throws SQLException {
+        if (!tableExists(connection, "cream_transactions")) {
+            createTransactionsTable(connection);
+        }
+        if (!tableExists(connection, "cream_snapshots")) {
+            createSnapshotTables(connection);
+        }
+        if (!tableExists(connection, "cream_balance_changes")) {
+            createChangesTable(connection);
+        }
+    }
+
+    /**
+     * Whether legacy balances are still being copied. While they are, callers
+     * must read missing balances with {@link #readLegacyBalance} and copy a
+     * player with {@link #copyPlayer} before changing their balances.
+     */
+    public boolean isCopying() {
+        return copying;
+    }
+
+    private void migrateToV1(Connection connection) throws SQLException {
+        if (mysql) {
+            execute(connection, SQL_ADD_NAME_COLUMN_MYSQL);
+            return;
+        }
+        try (PreparedStatement checkStmt = connection.prepareStatement(SQL_ADD_NAME_COLUMN_SQLITE_CHECK);
+                ResultSet rs = checkStmt.executeQuery()) {
+            if (rs.next() && rs.getInt("cnt") == 0) {
+                execute(connection, "ALTER TABLE cream_balances ADD COLUMN player_name VARCHAR(32)");
+            }
+        }
+    }
+
+    /**
+     * Puts an empty table in the v2 layout in place of the legacy one, which
+     * is kept as {@code cream_balances_v1_backup} to copy from. Does nothing if
+     * that already happened on an earlier start.
+     */
+    private void swapToV2(Connection connection) throws SQLException {
+        if (tableExists(connection, LEGACY_TABLE)) {
+            return;
+        }
+        // Left over from an interrupted copy of an older version; its rows are kept
+        if (!tableExists(connection, "cream_balances_v2")) {
+            createBalancesTable(connection, "cream_balances_v2");
+        }
+
+        if (mysql) {
+            // Atomic swap
+            execute(connection, "RENAME TABLE cream_balances TO " + LEGACY_TABLE + ", "
+                    + "cream_balances_v2 TO cream_balances");
+        } else {
+            connection.setAutoCommit(false);
+            try {
+                execute(connection, "ALTER TABLE cream_balances RENAME TO " + LEGACY_TABLE);
+                execute(connection, "ALTER TABLE cream_balances_v2 RENAME TO cream_balances");
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+        plugin.getLogger().info("Switched to the schema v2 balance table; balances are copied from "
+                + LEGACY_TABLE + " in the background.");
+    }
+
+    /**
+     * Copies the legacy balances into the v2 table in chunks, each on a
+     * connection of its own committed on its own, so writes go on between
+     * chunks. Rows already in the v2 table are kept. Once everything is
+     * copied the remaining versions are applied. An interrupted copy starts
+     * over on the next start, skipping rows already copied.
+     *
+     * @return whether the copy finished.
+     */
+    public boolean copyLegacyBalances(Database database) {
+        plugin.getLogger().info("Copying balances to schema v2, this may take a while on large databases...");
+        long start = System.currentTimeMillis();
+        String lastUuid = "";
+        String lastCurrency = "";
+        long copied = 0;
+        long rejected = 0;
+        int chunks = 0;
+        try {
+            while (true) {
+                int rows = 0;
+                try (Connection connection = database.getConnection()) {
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_LEGACY_CHUNK);
+                            Copier copier = new Copier(connection)) {
+                        select.setString(1, lastUuid);
+                        select.setString(2, lastCurrency);
+                        select.setInt(3, chunkSize);
+                        try (ResultSet rs = select.executeQuery()) {
+                            while (rs.next()) {
+                                lastUuid = rs.getString("player_uuid");
+                                lastCurrency = rs.getString("currency_id");
+                                rows++;
+                                copier.add(lastUuid, rs.getString("player_name"), lastCurrency, rs.getDouble("balance"));
+                            }
+                        }
+                        copier.execute();
+                        rejected += copier.rejected;
+                        connection.commit();
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                copied += rows;
+                if (++chunks % 50 == 0) {
+                    plugin.getLogger().info("Copied " + copied + " balance rows...");
+                }
+            }
+
+            try (Connection connection = database.getConnection()) {
+                writeVersion(connection, 2);
+                migrateAfterV2(connection, 2);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(java.util.logging.Level.SEVERE, "Failed to copy balances to schema v2 after "
+                    + copied + " rows; balances not copied yet are still read from " + LEGACY_TABLE
+                    + " and the copy resumes on the next start", e);
+            return false;
+        }
+        copying = false;
+
+        plugin.getLogger().info("Copied " + copied + " balance rows to schema v2 in "
+                + (System.currentTimeMillis() - start) + "ms. The old table was kept as " + LEGACY_TABLE + ".");
+        if (rejected > 0) {
+            plugin.getLogger().severe(rejected + " balance rows could not be converted and were moved to "
+                    + "cream_balances_rejected instead; see the warnings above.");
+        }
+        return true;
+    }
+
+    /**
+     * Copies the legacy rows of one player, if the copy is still running.
+     * Runs on the caller's connection and transaction, before the caller
+     * changes one of the player's balances.
+     */
+    public void copyPlayer(Connection connection, UUID uuid) throws SQLException {
+        if (!copying) {
+            return;
+        }
+        try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_LEGACY_PLAYER);
+                Copier copier = new Copier(connection)) {
+            select.setString(1, uuid.toString());
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    copier.add(rs.getString("player_uuid"), rs.getString("player_name"), rs.getString("currency_id"),
+                            rs.getDouble("balance"));
+                }
+            }
+            copier.execute();
+        }
+    }
+
+    /**
+     * Reads a balance that may not be copied yet from the legacy table.
+     *
+     * @return the balance in storage units, or null if the copy is done or the
+     *         legacy table has no usable row.
+     */
+    public Long readLegacyBalance(Connection connection, UUID uuid, String currencyId) throws SQLException {
+        if (!copying) {
+            return null;
+        }
+        try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_LEGACY_BALANCE)) {
+            select.setString(1, uuid.toString());
+            select.setString(2, currencyId);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return toStoredBalanceOrNull(rs.getDouble(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads every balance of a player from the legacy table, like
+     * {@link #readLegacyBalance}.
+     *
+     * @return currency id to balance in storage units, empty if the copy is
+     *         done.
+     */
+    public java.util.Map<String, Long> readLegacyBalances(Connection connection, UUID uuid) throws SQLException {
+        java.util.Map<String, Long> balances = new java.util.HashMap<>();
+        if (!copying) {
+            return balances;
+        }
+        try (PreparedStatement select = connection.prepareStatement(SQL_SELECT_LEGACY_PLAYER)) {
+            select.setString(1, uuid.toString());
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    Long balance = toStoredBalanceOrNull(rs.getDouble("balance"));
+                    if (balance != null) {
+                        balances.put(rs.getString("currency_id"), balance);
+                    }
+                }
+            }
+        }
+        return balances;
+    }
+
+    private static Long toStoredBalanceOrNull(double balance) {
+        try {
+            return toStoredBalance(balance);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Batches legacy rows into the v2 table. Rows with an invalid UUID or a
+     * balance outside {@link Money#MAX_STORABLE} go to
+     * {@code cream_balances_rejected} instead, so they are neither lost nor
+     * silently dropped from the live table.
+     */
+    private final class Copier implements AutoCloseable {
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private PreparedStatement reject;
+        private int rejected;
+
+        Copier(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.insert = connection.prepareStatement(mysql ? SQL_INSERT_V2 : SQL_INSERT_V2_SQLITE);
+        }
+
+        void add(String uuidText, String playerName, String currencyId, double balance) throws SQLException {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(uuidText);
+            } catch (IllegalArgumentException e) {
+                reject(uuidText, playerName, currencyId, balance, "invalid uuid");
+                return;
+            }
+            long units;
+            try {
+                units = toStoredBalance(balance);
+            } catch (ArithmeticException e) {
+                reject(uuidText, playerName, currencyId, balance, "balance out of range");
+                return;
+            }
+            insert.setBytes(1, uuidToBytes(uuid));
+            insert.setString(2, playerName);
+            insert.setString(3, currencyId);
+            insert.setLong(4, units);
+            insert.addBatch();
+        }
+
+        private void reject(String uuidText, String playerName, String currencyId, double balance, String reason)
+                throws SQLException {
+            if (reject == null) {
+                createRejectedTable(connection);
+                reject = connection.prepareStatement(mysql ? SQL_INSERT_REJECTED : SQL_INSERT_REJECTED_SQLITE);
+            }
+            plugin.getLogger().warning("Moving the balance of " + uuidText + " in " + currencyId + " (" + balance
+                    + ") to cream_balances_rejected: " + reason);
+            reject.setString(1, uuidText);
+            reject.setString(2, playerName);
+            reject.setString(3, currencyId);
+            reject.setDouble(4, balance);
+            reject.setString(5, reason);
+            reject.executeUpdate();
+            rejected++;
+        }
+
+        void execute() throws SQLException {
+            insert.executeBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            insert.close();
+            if (reject != null) {
+                reject.close();
+            }
+        }
+    }
+
+    private void createRejectedTable(Connection connection) throws SQLException {
+        execute(connection, "CREATE TABLE IF NOT EXISTS cream_balances_rejected (" +
+                "player_uuid VARCHAR(36) NOT NULL, " +
+                "player_name VARCHAR(32), " +
+                "currency_id VARCHAR(32) NOT NULL, " +
+                "balance DOUBLE, " +
+                "reason VARCHAR(64) NOT NULL, " +
+                "PRIMARY KEY (player_uuid, currency_id))");
+    }
+
+    /**
+     * Warns on every start while rows that could not be migrated are waiting
+     * in {@code cream_balances_rejected}.
+     */
+    private void reportRejected(Connection connection) throws SQLException {
+        if (!tableExists(connection, "cream_balances_rejected")) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM cream_balances_rejected");
+                ResultSet rs = statement.executeQuery()) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                plugin.getLogger().severe(rs.getLong(1) + " balance rows could not be migrated and are not in "
+                        + "cream_balances. They are kept in cream_balances_rejected; fix them into cream_balances "
+                        + "and delete them there.");
+            }
+        }
+    }
+
+    private void createBalancesTable(Connection connection, String table) throws SQLException {
+        execute(connection, "CREATE TABLE " + table + " (" +
+                "player_uuid " + (mysql ? "BINARY(16)" : "BLOB") + " NOT NULL, " +
+                "player_name VARCHAR(32), " +
+                "currency_id VARCHAR(32) NOT NULL, " +
+                "balance BIGINT NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (player_uuid, currency_id))");
+        // Serves ORDER BY balance DESC and SUM(balance) per currency
+        execute(connection, "CREATE INDEX idx_" + table + "_top ON " + table + " (currency_id, balance DESC)");
+    }
+
+    private void createTransactionsTable(Connection connection) throws SQLException {
+        String uuidType = mysql ? "BINARY(16)" : "BLOB";
+        execute(connection, "CREATE TABLE cream_transactions (" +
+                (mysql ? "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " : "id INTEGER PRIMARY KEY, ") +
+                "created_at BIGINT NOT NULL, " +
+                "type VARCHAR(32) NOT NULL, " +
+                "from_uuid " + uuidType + ", " +
+                "to_uuid " + uuidType + ", " +
+                "currency_id VARCHAR(32) NOT NULL, " +
+                "amount BIGINT NOT NULL, " +
+                "from_balance BIGINT, " +
+                "to_balance BIGINT, " +
+                "note VARCHAR(255))");
+        // Per-player history reads the newest ids of each side; time for range lookups
+        execute(connection, "CREATE INDEX idx_cream_transactions_from ON cream_transactions (from_uuid, id)");
+        execute(connection, "CREATE INDEX idx_cream_transactions_to ON cream_transactions (to_uuid, id)");
+        execute(connection, "CREATE INDEX idx_cream_transactions_time ON cream_transactions (created_at)");
+    }
+
+    private void createSnapshotTables(Connection connection) throws SQLException {
+        execute(connection, "CREATE TABLE cream_snapshots (" +
+                (mysql ? "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " : "id INTEGER PRIMARY KEY, ") +
+                "created_at BIGINT NOT NULL, " +
+                "last_transaction_id BIGINT NOT NULL, " +
+                "balances INT NOT NULL DEFAULT 0, " +
+                "complete BOOLEAN NOT NULL DEFAULT 0)");
+        execute(connection, "CREATE TABLE cream_snapshot_balances (" +
+                "snapshot_id BIGINT NOT NULL, " +
+                "player_uuid " + (mysql ? "BINARY(16)" : "BLOB") + " NOT NULL, " +
+                "player_name VARCHAR(32), " +
+                "currency_id VARCHAR(32) NOT NULL, " +
+                "balance BIGINT NOT NULL, " +
+                "PRIMARY KEY (snapshot_id, player_uuid, currency_id))");
+    }
+
+    private void createChangesTable(Connection connection) throws SQLException {
+        execute(connection, "CREATE TABLE cream_balance_changes (" +
+                (mysql ? "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " : "id INTEGER PRIMARY KEY, ") +
+                "origin VARCHAR(36) NOT NULL, " +
+                "sequence BIGINT NOT NULL, " +
+                "player_uuid " + (mysql ? "BINARY(16)" : "BLOB") + " NOT NULL, " +
+                "currency_id VARCHAR(32) NOT NULL, " +
+                "delta BIGINT NOT NULL, " +
+                "balance BIGINT NOT NULL, " +
+                "is_absolute BOOLEAN NOT NULL, " +
+                "created_at BIGINT NOT NULL)");
+        // Old rows are deleted by age
+        execute(connection, "CREATE INDEX idx_cream_balance_changes_time ON cream_balance_changes (created_at)");
+    }
+
+    /**
+     * @return the applied version, or -1 if none was recorded yet.
+     */
+    private int readVersion(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(version) FROM cream_schema_version");
+                ResultSet rs = statement.executeQuery()) {
+            if (rs.next()) {
+                int version = rs.getInt(1);
+                return rs.wasNull() ? -1 : version;
+            }
+        }
+        return -1;
+    }
+
+    private void writeVersion(Connection connection, int version) throws SQLException {
+        execute(connection, "DELETE FROM cream_schema_version");
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO cream_schema_version (version) VALUES (?)")) {
+            statement.setInt(1, version);
+            statement.executeUpdate();
+        }
+        plugin.getLogger().info("Database schema is at version " + version + ".");
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getTables(connection.getCatalog(), null, table, new String[] { "TABLE" })) {
+            return rs.next();
+        }
+    }
+
+    private boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    public static byte[] uuidToBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID uuidFromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    static long toStoredBalance(double balance) {
+        return Money.toStorageUnits(balance);
+    }
+}
@@ -0,0 +1,130 @@
+package com.agevate.creamcurrency.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prepared statements kept open on one connection, by SQL.
+ * <p>
+ * The SQLite driver has no statement cache, so every prepareStatement call
+ * compiles its query again. Statements handed out here behave like normal
+ * ones, but closing them only clears their parameters and keeps them for the
+ * next call with the same SQL. A statement still in use when its SQL is
+ * prepared again is not shared; the second caller gets an uncached one.
+ * <p>
+ * Not thread-safe; the connection must only be used by one thread at a time.
+ */
+final class StatementCache {
+
+    private final Connection connection;
+    private final Map<String, Entry> statements;
+
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        // Dropped from the cache while in use; closed when handed back
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                if (eldest.getValue().inUse) {
+                    eldest.getValue().evicted = true;
+                } else {
+                    closeQuietly(eldest.getValue().statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        Entry entry = statements.get(sql);
+        if (entry != null && entry.inUse) {
+            return connection.prepareStatement(sql);
+        }
+        if (entry == null || entry.statement.isClosed()) {
+            entry = new Entry(connection.prepareStatement(sql));
+            statements.put(sql, entry);
+        }
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new Handle(entry));
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // The connection is going away or already gone
+        }
+    }
+
+    /**
+     * One checkout of a cached statement; dead once closed.
+     */
+    private static final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private boolean released;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return released || entry.statement.isClosed();
+                default:
+                    if (released) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(entry.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+
+        private void release() throws SQLException {
+            entry.inUse = false;
+            if (entry.evicted) {
+                entry.statement.close();
+                return;
+            }
+            try {
+                entry.statement.clearParameters();
+                entry.statement.clearBatch();
+            } catch (SQLException e) {
+                // Not reusable; the next prepare replaces it
+                entry.statement.close();
+                throw e;
+            }
+        }
+    }
+}
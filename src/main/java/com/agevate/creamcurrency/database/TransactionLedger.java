@@ -0,0 +1,160 @@
+package com.agevate.creamcurrency.database;
+
+import com.agevate.creamcurrency.CreamCurrency;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+/**
+ * Structured transaction history in the {@code cream_transactions} table.
+ * <p>
+ * Every balance change is recorded by the DAO in the transaction that
+ * changes the balance (or, in write-behind mode, in the journal flush that
+ * writes it), so the ledger holds exactly the committed changes and can be
+ * replayed by {@link BalanceRecovery}. Each row carries the resulting balance
+ * of each side. History lookups read the newest rows of a player through the
+ * sender and receiver indexes, on the DAO's pool like other reads.
+ */
+public class TransactionLedger {
+
+    // Row types, named after the DAO operation that made the change
+    public static final String SET = "SET";
+    public static final String ADD = "ADD";
+    public static final String REMOVE = "REMOVE";
+    public static final String TRANSFER = "TRANSFER";
+
+    private static final String SQL_INSERT = "INSERT INTO cream_transactions "
+            + "(created_at, type, from_uuid, to_uuid, currency_id, amount, from_balance, to_balance, note) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_COLUMNS = "id, created_at, type, from_uuid, to_uuid, currency_id, amount, "
+            + "from_balance, to_balance, note";
+
+    // Each side is an index range scan on (uuid, id); the union is then cut to the page
+    private static final String SQL_SELECT_HISTORY = "SELECT * FROM (SELECT " + SQL_COLUMNS
+            + " FROM cream_transactions WHERE from_uuid = ? ORDER BY id DESC LIMIT ?) AS sent "
+            + "UNION ALL SELECT * FROM (SELECT " + SQL_COLUMNS
+            + " FROM cream_transactions WHERE to_uuid = ? ORDER BY id DESC LIMIT ?) AS received "
+            + "ORDER BY id DESC LIMIT ? OFFSET ?";
+
+    private final CreamCurrency plugin;
+    private final CompletableFuture<Void> schemaReady;
+    private final Executor reader;
+
+    /**
+     * One ledger row. Amounts and balances are in storage units; a null
+     * balance means the side is absent or its balance is unknown.
+     */
+    public record Transaction(long id, long timestamp, String type, UUID from, UUID to, String currencyId,
+            long amount, Long fromBalance, Long toBalance, String note) {
+    }
+
+    public TransactionLedger(CreamCurrency plugin, CompletableFuture<Void> schemaReady, Executor reader) {
+        this.plugin = plugin;
+        this.schemaReady = schemaReady;
+        this.reader = reader;
+    }
+
+    /**
+     * Creates a row for {@link #insert}, stamped with the current time.
+     */
+    public static Transaction entry(String type, UUID from, UUID to, String currencyId, long amount,
+            Long fromBalance, Long toBalance) {
+        return new Transaction(0, System.currentTimeMillis(), type, from, to, currencyId, amount, fromBalance,
+                toBalance, null);
+    }
+
+    /**
+     * Gets a page of a player's transactions, newest first. Changes still
+     * waiting in the write-behind journal are not included.
+     */
+    public CompletableFuture<List<Transaction>> getHistory(UUID uuid, int page, int pageSize) {
+        int offset = Math.max(0, page - 1) * pageSize;
+        return schemaReady.thenApplyAsync(ready -> {
+            List<Transaction> result = new ArrayList<>(pageSize);
+            byte[] key = SchemaMigrator.uuidToBytes(uuid);
+            try (Connection connection = plugin.getDatabase().getReadConnection();
+                    PreparedStatement statement = connection.prepareStatement(SQL_SELECT_HISTORY)) {
+                statement.setBytes(1, key);
+                statement.setInt(2, offset + pageSize);
+                statement.setBytes(3, key);
+                statement.setInt(4, offset + pageSize);
+                statement.setInt(5, pageSize);
+                statement.setInt(6, offset);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(read(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to load transaction history for " + uuid, e);
+            }
+            return result;
+        }, reader);
+    }
+
+    private Transaction read(ResultSet rs) throws SQLException {
+        byte[] from = rs.getBytes("from_uuid");
+        byte[] to = rs.getBytes("to_uuid");
+        long fromBalance = rs.getLong("from_balance");
+        Long fromValue = rs.wasNull() ? null : fromBalance;
+        long toBalance = rs.getLong("to_balance");
+        Long toValue = rs.wasNull() ? null : toBalance;
+        return new Transaction(rs.getLong("id"), rs.getLong("created_at"), rs.getString("type"),
+                from != null ? SchemaMigrator.uuidFromBytes(from) : null,
+                to != null ? SchemaMigrator.uuidFromBytes(to) : null,
+                rs.getString("currency_id"), rs.getLong("amount"), fromValue, toValue, rs.getString("note"));
+    }
+
+    /**
+     * Inserts rows on the caller's connection, inside the transaction that
+     * makes the changes they record. Transaction boundaries are left to the
+     * caller.
+     */
+    void insert(Connection connection, List<Transaction> transactions) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_INSERT)) {
+            for (Transaction transaction : transactions) {
+                statement.setLong(1, transaction.timestamp());
+                statement.setString(2, transaction.type());
+                setUuid(statement, 3, transaction.from());
+                setUuid(statement, 4, transaction.to());
+                statement.setString(5, transaction.currencyId());
+                statement.setLong(6, transaction.amount());
+                setBalance(statement, 7, transaction.fromBalance());
+                setBalance(statement, 8, transaction.toBalance());
+                statement.setString(9, transaction.note());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    void insert(Connection connection, Transaction transaction) throws SQLException {
+        insert(connection, List.of(transaction));
+    }
+
+    private static void setUuid(PreparedStatement statement, int index, UUID uuid) throws SQLException {
+        if (uuid != null) {
+            statement.setBytes(index, SchemaMigrator.uuidToBytes(uuid));
+        } else {
+            statement.setNull(index, Types.BINARY);
+        }
+    }
+
+    private static void setBalance(PreparedStatement statement, int index, Long balance) throws SQLException {
+        if (balance != null) {
+            statement.setLong(index, balance);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+}
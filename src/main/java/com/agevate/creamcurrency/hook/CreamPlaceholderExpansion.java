@@ -3,24 +3,69 @@ package com.agevate.creamcurrency.hook;
 import com.agevate.creamcurrency.CreamCurrency;
 import com.agevate.creamcurrency.cache.BalanceCache;
 import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.Money;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * PlaceholderAPI expansion for CreamCurrency.
  * Uses cache for fast placeholder resolution without blocking.
+ * <p>
+ * Scoreboard and tab plugins resolve the same few placeholders for every
+ * player every tick, so the parsed form of each params string is memoized, and
+ * the last rendered text per (player, placeholder) is reused while the balance
+ * is unchanged.
  */
-public class CreamPlaceholderExpansion extends PlaceholderExpansion {
+public class CreamPlaceholderExpansion extends PlaceholderExpansion implements Listener {
+
+    // Upper bound for memoized params strings; anything beyond is parsed per call
+    private static final int MAX_PARSED = 512;
 
     private final CreamCurrency plugin;
-    private final DecimalFormat compactFormat = new DecimalFormat("#,##0.##");
+
+    private final Map<String, Request> parsed = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<Request, Rendered>> rendered = new ConcurrentHashMap<>();
+    // Currency generation the memoized requests were resolved against
+    private volatile int generation = -1;
+
+    private enum Kind {
+        // Longer prefixes first
+        RAW_BALANCE("raw_balance_"),
+        BALANCE("balance_"),
+        FORMATTED("formatted_"),
+        RANK("rank_"),
+        SYMBOL("symbol_"),
+        NAME("name_"),
+        UNKNOWN("");
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    // A parsed params string; currency is null if the id is not loaded
+    private record Request(Kind kind, String currencyId, Currency currency) {
+    }
+
+    // Text rendered for a balance, in storage units
+    private record Rendered(long units, String text) {
+    }
 
     public CreamPlaceholderExpansion(CreamCurrency plugin) {
         this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
     @Override
@@ -49,85 +94,126 @@ public class CreamPlaceholderExpansion extends PlaceholderExpansion {
             return "";
         }
 
-        BalanceCache cache = plugin.getPlayerDataDAO().getCache();
+        Request request = resolve(params);
+        Currency currency = request.currency();
 
-        // %creamcurrency_balance_<currency>%
-        if (params.startsWith("balance_")) {
-            String currencyId = params.substring(8);
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            if (currency == null)
-                return "N/A";
-
-            // Try cache first (instant)
-            Double cached = cache.get(player.getUniqueId(), currencyId);
-            if (cached != null) {
-                return currency.format(cached);
-            }
+        switch (request.kind()) {
+            // %creamcurrency_balance_<currency>%
+            case BALANCE:
+                return currency != null ? renderBalance(player, request, "...") : "N/A";
 
-            // Trigger async load and return placeholder
-            plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), currencyId);
-            return "...";
-        }
+            // %creamcurrency_raw_balance_<currency>%
+            case RAW_BALANCE:
+                return currency != null ? renderBalance(player, request, "0") : "0";
 
-        // %creamcurrency_raw_balance_<currency>%
-        if (params.startsWith("raw_balance_")) {
-            String currencyId = params.substring(12);
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            if (currency == null)
-                return "0";
+            // %creamcurrency_formatted_<currency>% - Compact format (1K, 1M, etc)
+            case FORMATTED:
+                return currency != null ? renderBalance(player, request, "...") : "N/A";
 
-            Double cached = cache.get(player.getUniqueId(), currencyId);
-            if (cached != null) {
-                return String.valueOf(cached.longValue());
-            }
+            // %creamcurrency_rank_<currency>% - Leaderboard position, 0 if unranked
+            case RANK:
+                if (currency == null)
+                    return "0";
+                return String.valueOf(plugin.getPlayerDataDAO().getRank(player.getUniqueId(), request.currencyId()));
+
+            // %creamcurrency_symbol_<currency>%
+            case SYMBOL:
+                return currency != null ? currency.getSymbol() : "";
 
-            plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), currencyId);
-            return "0";
+            // %creamcurrency_name_<currency>%
+            case NAME:
+                return currency != null ? currency.getName() : "Unknown";
+
+            default:
+                return null;
         }
+    }
 
-        // %creamcurrency_formatted_<currency>% - Compact format (1K, 1M, etc)
-        if (params.startsWith("formatted_")) {
-            String currencyId = params.substring(10);
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            if (currency == null)
-                return "N/A";
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        rendered.remove(event.getPlayer().getUniqueId());
+    }
 
-            Double cached = cache.get(player.getUniqueId(), currencyId);
-            if (cached != null) {
-                return formatCompact(cached) + currency.getSymbol();
-            }
+    /**
+     * Gets the parsed form of a params string, memoized until the currencies are
+     * reloaded.
+     */
+    private Request resolve(String params) {
+        int current = plugin.getCurrencyManager().getGeneration();
+        if (current != generation) {
+            // Currencies were reloaded: resolved objects and formats may be stale
+            parsed.clear();
+            rendered.clear();
+            generation = current;
+        }
 
-            plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), currencyId);
-            return "...";
+        Request request = parsed.get(params);
+        if (request != null) {
+            return request;
+        }
+        request = parse(params);
+        if (parsed.size() < MAX_PARSED) {
+            parsed.put(params, request);
         }
+        return request;
+    }
 
-        // %creamcurrency_symbol_<currency>%
-        if (params.startsWith("symbol_")) {
-            String currencyId = params.substring(7);
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            return currency != null ? currency.getSymbol() : "";
+    private Request parse(String params) {
+        for (Kind kind : Kind.values()) {
+            if (kind != Kind.UNKNOWN && params.startsWith(kind.prefix)) {
+                String currencyId = params.substring(kind.prefix.length());
+                return new Request(kind, currencyId, plugin.getCurrencyManager().getCurrency(currencyId));
+            }
         }
+        return new Request(Kind.UNKNOWN, null, null);
+    }
 
-        // %creamcurrency_name_<currency>%
-        if (params.startsWith("name_")) {
-            String currencyId = params.substring(5);
-            Currency currency = plugin.getCurrencyManager().getCurrency(currencyId);
-            return currency != null ? currency.getName() : "Unknown";
+    /**
+     * Renders a balance placeholder from the cache, reusing the previous text if
+     * the balance has not changed.
+     *
+     * @param loading the text to show while an uncached balance is loaded.
+     */
+    private String renderBalance(OfflinePlayer player, Request request, String loading) {
+        UUID uuid = player.getUniqueId();
+        BalanceCache cache = plugin.getPlayerDataDAO().getCache();
+
+        // Try cache first (instant)
+        long units = cache.getUnits(uuid, request.currencyId());
+        if (units == BalanceCache.ABSENT) {
+            // Trigger async load and return placeholder
+            plugin.getPlayerDataDAO().getBalance(uuid, request.currencyId());
+            return loading;
         }
 
-        return null;
+        Map<Request, Rendered> texts = rendered.get(uuid);
+        if (texts != null) {
+            Rendered last = texts.get(request);
+            if (last != null && last.units() == units) {
+                return last.text();
+            }
+        }
+
+        String text = format(request, units);
+        // Offline players are never evicted, so only online ones are kept
+        if (player.isOnline()) {
+            if (texts == null) {
+                texts = rendered.computeIfAbsent(uuid, key -> new ConcurrentHashMap<>());
+            }
+            texts.put(request, new Rendered(units, text));
+        }
+        return text;
     }
 
-    private String formatCompact(double value) {
-        if (value >= 1_000_000_000_000L) {
-            return compactFormat.format(value / 1_000_000_000_000L) + "T";
-        } else if (value >= 1_000_000_000) {
-            return compactFormat.format(value / 1_000_000_000) + "B";
-        } else if (value >= 1_000_000) {
-            return compactFormat.format(value / 1_000_000) + "M";
-        } else if (value >= 1_000) {
-            return compactFormat.format(value / 1_000) + "K";
+    private String format(Request request, long units) {
+        Currency currency = request.currency();
+        switch (request.kind()) {
+            case RAW_BALANCE:
+                return String.valueOf(units / Money.storageFactor());
+            case FORMATTED:
+                return currency.formatCompact(units);
+            default:
+                return currency.format(currency.fromStorageUnits(units));
         }
-        return compactFormat.format(value);
     }
 }
@@ -9,14 +9,33 @@ import org.bukkit.OfflinePlayer;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 public class VaultHook implements Economy {
 
     private final CreamCurrency plugin;
+    // Serve cached balances from memory and persist through the write-behind journal
+    private final boolean inMemoryLedger;
+    // Upper bound for waiting on the database for uncached (offline) players
+    private final long offlineTimeoutMs;
 
     public VaultHook(CreamCurrency plugin) {
         this.plugin = plugin;
+        boolean ledgerWanted = plugin.getConfig().getBoolean("vault.in-memory-ledger", false);
+        // Only the journal retries a change until it is stored; without it the
+        // database has to confirm every change before Vault is answered
+        this.inMemoryLedger = ledgerWanted && plugin.getPlayerDataDAO().getJournal() != null;
+        if (ledgerWanted && !inMemoryLedger) {
+            plugin.getLogger().warning("vault.in-memory-ledger needs database.write-behind.enabled; "
+                    + "Vault changes will wait for the database");
+        }
+        this.offlineTimeoutMs = Math.max(1, plugin.getConfig().getLong("vault.offline-timeout-ms", 2000));
     }
 
     private Currency getPrimary() {
@@ -40,7 +59,8 @@ public class VaultHook implements Economy {
 
     @Override
     public int fractionalDigits() {
-        return 2;
+        Currency primary = getPrimary();
+        return primary != null ? primary.getScale() : 2;
     }
 
     @Override
@@ -61,28 +81,111 @@ public class VaultHook implements Economy {
         return primary != null ? primary.getName() : "";
     }
 
-    // Since our database is async, but Vault is sync, we have to block.
-    // This is not ideal but required by Vault's API contract.
-    // For high performance, everything should be cached, but for this task we
-    // follow basic Vault hook logic.
+    // Vault is sync but our database is async. Cached balances (online players)
+    // are answered from memory; anything that needs the database is waited for
+    // at most offlineTimeoutMs.
 
     private double getBalanceSync(OfflinePlayer player) {
         Currency primary = getPrimary();
         if (primary == null)
             return 0;
+        double cached = plugin.getPlayerDataDAO().getCache().getOrNaN(player.getUniqueId(), primary.getId());
+        if (!Double.isNaN(cached)) {
+            return cached;
+        }
+        Double balance = await(plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), primary.getId()));
+        return balance != null ? balance : 0;
+    }
+
+    /**
+     * Waits for a database result up to the configured timeout.
+     *
+     * @return the result, or null if it failed or timed out.
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        if (!future.isDone() && plugin.getPlayerDataDAO().isDatabaseThread()) {
+            // Called from a callback on our own pool: waiting could starve it
+            plugin.getLogger().warning("Vault request for an uncached balance made from a database thread, not waiting");
+            return null;
+        }
         try {
-            return plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), primary.getId()).get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-            return 0;
+            return future.get(offlineTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Vault request timed out after " + offlineTimeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.WARNING, "Vault request failed", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the outcome of a balance change up to the configured timeout.
+     * A change that is still running by then is answered as failed, so callers
+     * may retry it; to keep them from paying or charging twice, it is reversed
+     * with {@code undo} if it goes through later.
+     *
+     * @return the new balance, or null if the change failed or timed out.
+     */
+    private Double awaitOutcome(CompletableFuture<Double> future, String what,
+            Supplier<CompletableFuture<Double>> undo) {
+        try {
+            return future.get(offlineTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Vault " + what + " timed out after " + offlineTimeoutMs
+                    + "ms, it will be reversed if it still goes through");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().warning("Interrupted while waiting for a Vault " + what
+                    + ", it will be reversed if it still goes through");
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.WARNING, "Vault " + what + " failed", e.getCause());
+            return null;
         }
+
+        future.thenAccept(newBalance -> {
+            if (newBalance == null || newBalance < 0) {
+                return;
+            }
+            undo.get().thenAccept(reverted -> {
+                if (reverted == null || reverted < 0) {
+                    plugin.getLogger().severe("Could not reverse a timed out Vault " + what
+                            + "; the caller was told it failed");
+                }
+            });
+        });
+        return null;
+    }
+
+    /**
+     * @return whether a balance change may be made through the database now.
+     */
+    private boolean canChangeInDatabase() {
+        return plugin.getPlayerDataDAO().isReady();
+    }
+
+    /**
+     * @return whether a balance change may be waited for on this thread.
+     */
+    private boolean canWaitForChange() {
+        if (plugin.getPlayerDataDAO().isDatabaseThread()) {
+            // Waiting from our own pool could starve it; refuse before anything is changed
+            plugin.getLogger().warning("Vault balance change made from a database thread, refusing it");
+            return false;
+        }
+        return true;
     }
 
-    private void setBalanceSync(OfflinePlayer player, double amount) {
-        Currency primary = getPrimary();
-        if (primary == null)
-            return;
-        plugin.getPlayerDataDAO().setBalance(player.getUniqueId(), primary.getId(), amount).join();
+    /**
+     * Makes sure the player's primary balance is cached, loading it with a
+     * bounded wait if needed.
+     */
+    private boolean ensureCached(OfflinePlayer player, Currency primary) {
+        if (plugin.getPlayerDataDAO().getCache().contains(player.getUniqueId(), primary.getId())) {
+            return true;
+        }
+        return await(plugin.getPlayerDataDAO().getBalance(player.getUniqueId(), primary.getId())) != null;
     }
 
     @Override
@@ -157,13 +260,44 @@ public class VaultHook implements Economy {
             return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Cannot withdraw negative amount");
         }
 
+        Currency primary = getPrimary();
+        if (primary == null) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "No primary currency");
+        }
+
+        if (inMemoryLedger) {
+            if (!ensureCached(player, primary)) {
+                return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Balance unavailable");
+            }
+            double newBalance = plugin.getPlayerDataDAO().removeCachedBalance(player.getUniqueId(), primary.getId(),
+                    amount);
+            if (Double.isNaN(newBalance)) {
+                return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Balance unavailable");
+            }
+            if (newBalance < 0) {
+                return new EconomyResponse(0, getBalanceSync(player), EconomyResponse.ResponseType.FAILURE,
+                        "Insufficient funds");
+            }
+            return new EconomyResponse(amount, newBalance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+
+        if (!canWaitForChange()) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Called from a database thread");
+        }
+        if (!canChangeInDatabase()) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Database not ready");
+        }
         double balance = getBalanceSync(player);
         if (balance < amount) {
             return new EconomyResponse(0, balance, EconomyResponse.ResponseType.FAILURE, "Insufficient funds");
         }
 
-        double newBalance = balance - amount;
-        setBalanceSync(player, newBalance);
+        UUID uuid = player.getUniqueId();
+        Double newBalance = awaitOutcome(plugin.getPlayerDataDAO().removeBalance(uuid, primary.getId(), amount),
+                "withdrawal", () -> plugin.getPlayerDataDAO().addBalance(uuid, primary.getId(), amount));
+        if (newBalance == null || newBalance < 0) {
+            return new EconomyResponse(0, balance, EconomyResponse.ResponseType.FAILURE, "Withdraw failed");
+        }
         return new EconomyResponse(amount, newBalance, EconomyResponse.ResponseType.SUCCESS, null);
     }
 
@@ -188,9 +322,35 @@ public class VaultHook implements Economy {
             return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Cannot deposit negative amount");
         }
 
-        double balance = getBalanceSync(player);
-        double newBalance = balance + amount;
-        setBalanceSync(player, newBalance);
+        Currency primary = getPrimary();
+        if (primary == null) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "No primary currency");
+        }
+
+        if (inMemoryLedger) {
+            if (!ensureCached(player, primary)) {
+                return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Balance unavailable");
+            }
+            double newBalance = plugin.getPlayerDataDAO().addCachedBalance(player.getUniqueId(), primary.getId(),
+                    amount);
+            if (Double.isNaN(newBalance)) {
+                return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Balance unavailable");
+            }
+            return new EconomyResponse(amount, newBalance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+
+        if (!canWaitForChange()) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Called from a database thread");
+        }
+        if (!canChangeInDatabase()) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Database not ready");
+        }
+        UUID uuid = player.getUniqueId();
+        Double newBalance = awaitOutcome(plugin.getPlayerDataDAO().addBalance(uuid, primary.getId(), amount),
+                "deposit", () -> plugin.getPlayerDataDAO().removeBalance(uuid, primary.getId(), amount));
+        if (newBalance == null || newBalance < 0) {
+            return new EconomyResponse(0, 0, EconomyResponse.ResponseType.FAILURE, "Deposit failed");
+        }
         return new EconomyResponse(amount, newBalance, EconomyResponse.ResponseType.SUCCESS, null);
     }
 
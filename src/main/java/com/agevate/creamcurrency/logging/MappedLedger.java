@@ -0,0 +1,460 @@
+package com.agevate.creamcurrency.logging;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.database.TransactionLedger.Transaction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only transaction ledger in memory-mapped segment files.
+ * <p>
+ * Each segment is a file of fixed size ({@code ledger/segment-<first>.seg})
+ * with a 64 byte header followed by fixed-width records, numbered by a
+ * sequence that continues across segments. One writer thread copies records
+ * into the mapping, so appending costs a memory copy; the mapping is forced to
+ * disk on every flush interval when {@code logging.fsync} is on.
+ * <p>
+ * A record slot is empty while its sequence is 0, and every record carries a
+ * CRC32C, so other processes can read a segment while it is written (see
+ * {@link #scan(Path, Consumer)}). On startup the tail of the newest segment is
+ * scanned and torn records left by a crash are discarded. Full segments beyond
+ * the configured number are compressed into {@code ledger/archive} without
+ * their unused space.
+ */
+public class MappedLedger implements TransactionSink {
+
+    private static final long MAGIC = 0x4352454D4C454447L; // "CREMLEDG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 160;
+
+    // Record layout
+    private static final int SEQUENCE = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int FROM = 16;
+    private static final int TO = 32;
+    private static final int AMOUNT = 48;
+    private static final int FROM_BALANCE = 56;
+    private static final int TO_BALANCE = 64;
+    private static final int TYPE = 72;
+    private static final int TYPE_SIZE = 16;
+    private static final int CURRENCY = 88;
+    private static final int CURRENCY_SIZE = 32;
+    private static final int NOTE = 120;
+    private static final int NOTE_SIZE = 32;
+    private static final int CHECKSUM = 152;
+
+    // Stored for a missing balance
+    private static final long NO_BALANCE = Long.MIN_VALUE;
+    private static final int DRAIN_BATCH = 1024;
+
+    private final CreamCurrency plugin;
+    private final Path directory;
+    private final Path archiveDirectory;
+    private final long segmentBytes;
+    private final int activeSegments;
+    private final long flushIntervalMs;
+    private final boolean fsync;
+
+    private final BlockingQueue<Transaction> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running;
+
+    // Writer thread only
+    private Segment segment;
+    private long nextSequence = 1;
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long reportedDrops;
+
+    public MappedLedger(CreamCurrency plugin) {
+        this.plugin = plugin;
+        this.directory = plugin.getDataFolder().toPath().resolve("ledger");
+        this.archiveDirectory = directory.resolve("archive");
+        long segmentMb = Math.max(1, plugin.getConfig().getLong("logging.mapped-ledger.segment-size-mb", 16));
+        long records = (segmentMb * 1024 * 1024 - HEADER_SIZE) / RECORD_SIZE;
+        this.segmentBytes = HEADER_SIZE + records * RECORD_SIZE;
+        this.activeSegments = plugin.getConfig().getInt("logging.mapped-ledger.active-segments", 8);
+        this.flushIntervalMs = Math.max(50, plugin.getConfig().getLong("logging.flush-interval-ms", 1000));
+        this.fsync = plugin.getConfig().getBoolean("logging.fsync", true);
+        this.queue = new ArrayBlockingQueue<>(Math.max(64, plugin.getConfig().getInt("logging.queue-capacity", 8192)));
+
+        try {
+            recover();
+            running = true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not open the mapped ledger, it stays disabled: " + e.getMessage());
+        }
+
+        this.writer = new Thread(this::runWriter, "CreamCurrency-MappedLedger");
+        writer.setDaemon(true);
+        if (running) {
+            writer.start();
+        }
+    }
+
+    @Override
+    public void record(String type, UUID from, UUID to, String currencyId, long amount, Long fromBalance,
+            Long toBalance, String note) {
+        Transaction transaction = new Transaction(0, System.currentTimeMillis(), type, from, to, currencyId, amount,
+                fromBalance, toBalance, note);
+        if (!running || !queue.offer(transaction)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of records dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Reads the complete records of a segment file in order. Safe to call while
+     * the segment is being written; reading stops at the first record that is
+     * not fully written.
+     *
+     * @return the number of records read.
+     * @throws IOException if the file cannot be read or is not a ledger segment.
+     */
+    public static int scan(Path file, Consumer<Transaction> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int capacity = checkHeader(map, file);
+            CRC32C crc = new CRC32C();
+            int count = 0;
+            while (count < capacity && isValid(map, count, firstSequence(map) + count, crc)) {
+                consumer.accept(decode(map, HEADER_SIZE + count * RECORD_SIZE));
+                count++;
+            }
+            return count;
+        }
+    }
+
+    // Opens the newest segment and finds the end of its valid records
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            segment = Segment.create(directory, 1, segmentBytes);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        segment = Segment.open(last);
+        int count = 0;
+        while (count < segment.capacity && isValid(segment.map, count, segment.firstSequence + count, crc)) {
+            count++;
+        }
+
+        // Anything after the last valid record was torn by a crash
+        int torn = 0;
+        for (int i = count; i < segment.capacity && segment.map.getLong(offset(i) + SEQUENCE) != 0; i++) {
+            segment.map.put(offset(i), new byte[RECORD_SIZE]);
+            torn++;
+        }
+        if (torn > 0) {
+            segment.map.force();
+            plugin.getLogger().warning("Discarded " + torn + " incomplete records at the end of ledger segment "
+                    + last.getFileName());
+        }
+
+        segment.count = count;
+        nextSequence = segment.firstSequence + count;
+        if (segment.count == segment.capacity) {
+            roll();
+        }
+    }
+
+    private void runWriter() {
+        List<Transaction> batch = new ArrayList<>(DRAIN_BATCH);
+        long lastFlush = System.currentTimeMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                Transaction first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                    for (Transaction transaction : batch) {
+                        append(transaction);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to write to the mapped ledger: " + e.getMessage());
+                batch.clear();
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= flushIntervalMs) {
+                flush();
+                reportDrops();
+                lastFlush = now;
+            }
+        }
+        flush();
+        reportDrops();
+    }
+
+    private void append(Transaction transaction) throws IOException {
+        if (segment.count == segment.capacity) {
+            roll();
+        }
+
+        Arrays.fill(scratch.array(), (byte) 0);
+        scratch.putLong(SEQUENCE, nextSequence);
+        scratch.putLong(TIMESTAMP, transaction.timestamp());
+        putUuid(FROM, transaction.from());
+        putUuid(TO, transaction.to());
+        scratch.putLong(AMOUNT, transaction.amount());
+        scratch.putLong(FROM_BALANCE, transaction.fromBalance() != null ? transaction.fromBalance() : NO_BALANCE);
+        scratch.putLong(TO_BALANCE, transaction.toBalance() != null ? transaction.toBalance() : NO_BALANCE);
+        putString(TYPE, TYPE_SIZE, transaction.type());
+        putString(CURRENCY, CURRENCY_SIZE, transaction.currencyId());
+        putString(NOTE, NOTE_SIZE, transaction.note());
+        crc.reset();
+        crc.update(scratch.array(), 0, CHECKSUM);
+        scratch.putInt(CHECKSUM, (int) crc.getValue());
+
+        segment.map.put(offset(segment.count), scratch.array(), 0, RECORD_SIZE);
+        segment.count++;
+        segment.dirty = true;
+        nextSequence++;
+    }
+
+    private void putUuid(int offset, UUID uuid) {
+        if (uuid != null) {
+            scratch.putLong(offset, uuid.getMostSignificantBits());
+            scratch.putLong(offset + 8, uuid.getLeastSignificantBits());
+        }
+    }
+
+    // Truncates at a character boundary when the value does not fit
+    private void putString(int offset, int size, String value) {
+        if (value != null) {
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(value), scratch.slice(offset, size), true);
+        }
+    }
+
+    private void flush() {
+        if (fsync && segment.dirty) {
+            segment.map.force();
+        }
+        segment.dirty = false;
+    }
+
+    private void roll() throws IOException {
+        flush();
+        segment = Segment.create(directory, nextSequence, segmentBytes);
+        if (activeSegments > 0) {
+            archiveOldSegments();
+        }
+    }
+
+    // Compresses the oldest full segments, keeping only their records
+    private void archiveOldSegments() {
+        List<Path> segments;
+        try {
+            segments = listSegments();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to list ledger segments: " + e.getMessage());
+            return;
+        }
+        for (int i = 0; i < segments.size() - activeSegments; i++) {
+            Path file = segments.get(i);
+            Path archived = archiveDirectory.resolve(file.getFileName() + ".gz");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int capacity = checkHeader(map, file);
+                int count = 0;
+                while (count < capacity && map.getLong(offset(count) + SEQUENCE) != 0) {
+                    count++;
+                }
+                Files.createDirectories(archiveDirectory);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archived))) {
+                    byte[] chunk = new byte[64 * 1024];
+                    ByteBuffer used = map.slice(0, offset(count));
+                    while (used.hasRemaining()) {
+                        int length = Math.min(chunk.length, used.remaining());
+                        used.get(chunk, 0, length);
+                        out.write(chunk, 0, length);
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to archive ledger segment " + file.getFileName() + ": "
+                        + e.getMessage());
+                continue;
+            }
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                // Still mapped somewhere (e.g. on Windows); retried on the next roll
+                plugin.getLogger().warning("Archived ledger segment " + file.getFileName()
+                        + " but could not delete it: " + e.getMessage());
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Names are zero-padded, so name order is sequence order
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith("segment-") && name.endsWith(".seg");
+            }).sorted().toList();
+        }
+    }
+
+    private void reportDrops() {
+        long total = dropped.get();
+        if (total > reportedDrops) {
+            plugin.getLogger().warning("Dropped " + (total - reportedDrops)
+                    + " mapped ledger records because the ledger writer fell behind.");
+            reportedDrops = total;
+        }
+    }
+
+    private static int offset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private static int checkHeader(ByteBuffer map, Path file) throws IOException {
+        if (map.capacity() < HEADER_SIZE || map.getLong(0) != MAGIC || map.getInt(8) != VERSION
+                || map.getInt(12) != RECORD_SIZE) {
+            throw new IOException(file.getFileName() + " is not a ledger segment");
+        }
+        return (map.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    private static long firstSequence(ByteBuffer map) {
+        return map.getLong(16);
+    }
+
+    private static boolean isValid(ByteBuffer map, int record, long expectedSequence, CRC32C crc) {
+        int offset = offset(record);
+        if (map.getLong(offset + SEQUENCE) != expectedSequence) {
+            return false;
+        }
+        crc.reset();
+        crc.update(map.slice(offset, CHECKSUM));
+        return map.getInt(offset + CHECKSUM) == (int) crc.getValue();
+    }
+
+    private static Transaction decode(ByteBuffer map, int offset) {
+        long fromBalance = map.getLong(offset + FROM_BALANCE);
+        long toBalance = map.getLong(offset + TO_BALANCE);
+        return new Transaction(map.getLong(offset + SEQUENCE), map.getLong(offset + TIMESTAMP),
+                getString(map, offset + TYPE, TYPE_SIZE),
+                getUuid(map, offset + FROM), getUuid(map, offset + TO),
+                getString(map, offset + CURRENCY, CURRENCY_SIZE),
+                map.getLong(offset + AMOUNT),
+                fromBalance != NO_BALANCE ? fromBalance : null,
+                toBalance != NO_BALANCE ? toBalance : null,
+                getString(map, offset + NOTE, NOTE_SIZE));
+    }
+
+    private static UUID getUuid(ByteBuffer map, int offset) {
+        long most = map.getLong(offset);
+        long least = map.getLong(offset + 8);
+        return most == 0 && least == 0 ? null : new UUID(most, least);
+    }
+
+    private static String getString(ByteBuffer map, int offset, int size) {
+        int length = 0;
+        while (length < size && map.get(offset + length) != 0) {
+            length++;
+        }
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        map.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A mapped segment file. The channel is closed once mapped; the mapping
+     * stays valid on its own.
+     */
+    private static final class Segment {
+
+        final MappedByteBuffer map;
+        final long firstSequence;
+        final int capacity;
+        int count;
+        boolean dirty;
+
+        private Segment(MappedByteBuffer map, long firstSequence, int capacity) {
+            this.map = map;
+            this.firstSequence = firstSequence;
+            this.capacity = capacity;
+        }
+
+        static Segment create(Path directory, long firstSequence, long size) throws IOException {
+            Path file = directory.resolve(String.format("segment-%019d.seg", firstSequence));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                map.putLong(0, MAGIC);
+                map.putInt(8, VERSION);
+                map.putInt(12, RECORD_SIZE);
+                map.putLong(16, firstSequence);
+                map.putLong(24, System.currentTimeMillis());
+                map.force();
+                return new Segment(map, firstSequence, (int) ((size - HEADER_SIZE) / RECORD_SIZE));
+            }
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                int capacity = checkHeader(map, file);
+                return new Segment(map, firstSequence(map), capacity);
+            }
+        }
+    }
+
+    /**
+     * Stops the writer after everything queued is appended and forced to disk.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,39 +1,99 @@
 package com.agevate.creamcurrency.logging;
 
 import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.CurrencyFormatter;
+import com.agevate.creamcurrency.currency.Money;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles transaction logging to file.
  * All logging is done asynchronously to prevent performance impact.
+ * <p>
+ * Entries go through a bounded queue to a single writer thread, which keeps
+ * one open file per category and day and appends through a direct buffer.
+ * Buffers are written when full and on every flush interval, followed by one
+ * fsync for all files written since the last one. Files roll over at midnight
+ * and when they reach the size limit. When the queue is full, entries are
+ * dropped and counted rather than blocking the caller.
+ * <p>
+ * Every entry is also passed to the {@link TransactionSink}s, i.e. the
+ * {@link MappedLedger} when enabled. The {@code cream_transactions} ledger is
+ * not fed from here: the DAO records every balance change in it, in the same
+ * transaction as the change.
  */
 public class TransactionLogger {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DRAIN_BATCH = 1024;
+
+    // Amounts are logged with two decimals
+    private static final CurrencyFormatter AMOUNT = CurrencyFormatter.compile("0.00", "", true);
+
     private final CreamCurrency plugin;
+    // Stamps the entries and decides the day of their file
+    private final Clock clock;
     private final Path logDirectory;
-    private final ExecutorService executor;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
     private final boolean enabled;
+    private final long flushIntervalMs;
+    private final long maxFileSize;
+    private final boolean fsync;
+
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final List<TransactionSink> sinks = new ArrayList<>();
+    private final MappedLedger mappedLedger;
+
+    // Writer thread only
+    private final Map<String, Segment> segments = new HashMap<>();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long reportedDrops;
+
+    private record Entry(String category, long timestamp, String message) {
+    }
 
     public TransactionLogger(CreamCurrency plugin) {
+        this(plugin, Clock.systemDefaultZone());
+    }
+
+    TransactionLogger(CreamCurrency plugin, Clock clock) {
         this.plugin = plugin;
+        this.clock = clock;
         this.logDirectory = plugin.getDataFolder().toPath().resolve("logs");
-        this.executor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "CreamCurrency-Logger");
-            t.setDaemon(true);
-            return t;
-        });
         this.enabled = plugin.getConfig().getBoolean("logging.enabled", true);
+        this.flushIntervalMs = Math.max(50, plugin.getConfig().getLong("logging.flush-interval-ms", 1000));
+        this.maxFileSize = Math.max(1, plugin.getConfig().getLong("logging.max-file-size-mb", 64)) * 1024 * 1024;
+        this.fsync = plugin.getConfig().getBoolean("logging.fsync", true);
+        this.queue = new ArrayBlockingQueue<>(Math.max(64, plugin.getConfig().getInt("logging.queue-capacity", 8192)));
 
         // Create logs directory
         try {
@@ -41,20 +101,30 @@ public class TransactionLogger {
         } catch (IOException e) {
             plugin.getLogger().warning("Could not create logs directory: " + e.getMessage());
         }
+
+        this.mappedLedger = plugin.getConfig().getBoolean("logging.mapped-ledger.enabled", false)
+                ? new MappedLedger(plugin)
+                : null;
+        if (mappedLedger != null) {
+            sinks.add(mappedLedger);
+        }
+
+        this.writer = new Thread(this::runWriter, "CreamCurrency-Logger");
+        writer.setDaemon(true);
+        writer.start();
     }
 
     /**
      * Log a payment between players
      */
     public void logPayment(UUID sender, String senderName, UUID receiver, String receiverName,
-            String currencyId, double amount) {
+            String currencyId, double amount, double senderBalance, double receiverBalance) {
+        record("PAY", sender, receiver, currencyId, amount, senderBalance, receiverBalance, null);
         if (!enabled)
             return;
 
-        String message = String.format("[PAY] %s (%s) -> %s (%s) | Currency: %s | Amount: %.2f",
-                senderName, sender.toString(),
-                receiverName, receiver.toString(),
-                currencyId, amount);
+        String message = "[PAY] " + senderName + " (" + sender + ") -> " + receiverName + " (" + receiver
+                + ") | Currency: " + currencyId + " | Amount: " + AMOUNT.format(amount);
         log("pay", message);
     }
 
@@ -63,11 +133,12 @@ public class TransactionLogger {
      */
     public void logAdminGive(String adminName, UUID target, String targetName,
             String currencyId, double amount, double newBalance) {
+        record("ADMIN-GIVE", null, target, currencyId, amount, Double.NaN, newBalance, adminName);
         if (!enabled)
             return;
 
-        String message = String.format("[ADMIN-GIVE] %s gave %.2f %s to %s (%s) | New Balance: %.2f",
-                adminName, amount, currencyId, targetName, target.toString(), newBalance);
+        String message = "[ADMIN-GIVE] " + adminName + " gave " + AMOUNT.format(amount) + " " + currencyId
+                + " to " + targetName + " (" + target + ") | New Balance: " + AMOUNT.format(newBalance);
         log("admin", message);
     }
 
@@ -76,11 +147,13 @@ public class TransactionLogger {
      */
     public void logAdminSet(String adminName, UUID target, String targetName,
             String currencyId, double oldBalance, double newBalance) {
+        // The amount is the signed change
+        record("ADMIN-SET", null, target, currencyId, newBalance - oldBalance, Double.NaN, newBalance, adminName);
         if (!enabled)
             return;
 
-        String message = String.format("[ADMIN-SET] %s set %s's (%s) %s balance from %.2f to %.2f",
-                adminName, targetName, target.toString(), currencyId, oldBalance, newBalance);
+        String message = "[ADMIN-SET] " + adminName + " set " + targetName + "'s (" + target + ") " + currencyId
+                + " balance from " + AMOUNT.format(oldBalance) + " to " + AMOUNT.format(newBalance);
         log("admin", message);
     }
 
@@ -89,11 +162,12 @@ public class TransactionLogger {
      */
     public void logAdminRemove(String adminName, UUID target, String targetName,
             String currencyId, double amount, double newBalance) {
+        record("ADMIN-REMOVE", target, null, currencyId, amount, newBalance, Double.NaN, adminName);
         if (!enabled)
             return;
 
-        String message = String.format("[ADMIN-REMOVE] %s removed %.2f %s from %s (%s) | New Balance: %.2f",
-                adminName, amount, currencyId, targetName, target.toString(), newBalance);
+        String message = "[ADMIN-REMOVE] " + adminName + " removed " + AMOUNT.format(amount) + " " + currencyId
+                + " from " + targetName + " (" + target + ") | New Balance: " + AMOUNT.format(newBalance);
         log("admin", message);
     }
 
@@ -101,11 +175,18 @@ public class TransactionLogger {
      * Log a Vault transaction
      */
     public void logVaultTransaction(String type, UUID player, String playerName, double amount, double newBalance) {
+        Currency primary = plugin.getCurrencyManager().getPrimaryCurrency();
+        if (primary != null) {
+            // Withdrawals take money from the player, everything else gives it
+            boolean outgoing = type.equalsIgnoreCase("WITHDRAW");
+            record("VAULT-" + type, outgoing ? player : null, outgoing ? null : player, primary.getId(), amount,
+                    outgoing ? newBalance : Double.NaN, outgoing ? Double.NaN : newBalance, null);
+        }
         if (!enabled)
             return;
 
-        String message = String.format("[VAULT-%s] %s (%s) | Amount: %.2f | New Balance: %.2f",
-                type, playerName, player.toString(), amount, newBalance);
+        String message = "[VAULT-" + type + "] " + playerName + " (" + player + ") | Amount: "
+                + AMOUNT.format(amount) + " | New Balance: " + AMOUNT.format(newBalance);
         log("api", message);
     }
 
@@ -114,50 +195,274 @@ public class TransactionLogger {
      */
     public void logTransaction(String type, UUID player, String playerName,
             String currencyId, double amount, String details) {
+        record(type, null, player, currencyId, amount, Double.NaN, Double.NaN, details);
         if (!enabled)
             return;
 
-        String message = String.format("[%s] %s (%s) | Currency: %s | Amount: %.2f | %s",
-                type, playerName, player.toString(), currencyId, amount, details);
+        String message = "[" + type + "] " + playerName + " (" + player + ") | Currency: " + currencyId
+                + " | Amount: " + AMOUNT.format(amount) + " | " + details;
         log("api", message);
     }
 
+    /**
+     * Gets the number of entries dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the mapped ledger, or null if it is disabled.
+     */
+    public MappedLedger getMappedLedger() {
+        return mappedLedger;
+    }
+
+    private void record(String type, UUID from, UUID to, String currencyId, double amount, double fromBalance,
+            double toBalance, String note) {
+        if (sinks.isEmpty())
+            return;
+
+        try {
+            long units = Money.toStorageUnits(amount);
+            Long fromUnits = storageUnits(fromBalance);
+            Long toUnits = storageUnits(toBalance);
+            for (TransactionSink sink : sinks) {
+                sink.record(type, from, to, currencyId, units, fromUnits, toUnits, note);
+            }
+        } catch (ArithmeticException e) {
+            plugin.getLogger().warning("Not recording " + type + " transaction with invalid amount " + amount);
+        }
+    }
+
+    // NaN stands for an unknown balance
+    private static Long storageUnits(double balance) {
+        return Double.isNaN(balance) ? null : Money.toStorageUnits(balance);
+    }
+
     private void log(String category, String message) {
-        executor.submit(() -> {
+        // Never block the caller; a full queue means the disk can't keep up
+        if (!running || !queue.offer(new Entry(category, clock.millis(), message))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH);
+        long lastFlush = System.currentTimeMillis();
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                    for (Entry entry : batch) {
+                        write(entry);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= flushIntervalMs) {
+                flushAll();
+                reportDrops();
+                lastFlush = now;
+            }
+        }
+
+        flushAll();
+        reportDrops();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void write(Entry entry) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp()), clock.getZone());
+        String line = "[" + time.format(timeFormatter) + "] " + entry.message() + System.lineSeparator();
+        try {
+            Segment segment = segmentFor(entry.category(), time.toLocalDate());
+            // The limit is in bytes; player names and messages may hold multi-byte characters
+            if (segment.size + segment.buffer.position() + utf8Length(line) > maxFileSize && segment.size > 0) {
+                segment.roll();
+            }
+            segment.append(line);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to write to transaction log (" + entry.category() + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of bytes a string takes in UTF-8, without encoding it.
+     */
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Opens the file of the day, closing the previous day's after midnight
+    private Segment segmentFor(String category, LocalDate date) throws IOException {
+        Segment segment = segments.get(category);
+        if (segment != null && segment.date.equals(date)) {
+            return segment;
+        }
+        if (segment != null) {
+            segment.close();
+            segments.remove(category);
+        }
+        segment = new Segment(category, date);
+        segments.put(category, segment);
+        return segment;
+    }
+
+    // Writes every buffer out, then one fsync per file written since the last flush
+    private void flushAll() {
+        for (Segment segment : segments.values()) {
             try {
-                LocalDateTime now = LocalDateTime.now();
-                // Create category directory if needed: logs/pay, logs/api, etc.
-                Path categoryDir = logDirectory.resolve(category);
-                if (!Files.exists(categoryDir)) {
-                    Files.createDirectories(categoryDir);
+                segment.flush();
+                if (fsync && segment.dirty) {
+                    segment.channel.force(false);
                 }
+                segment.dirty = false;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to flush transaction log (" + segment.category + "): " + e.getMessage());
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long total = dropped.get();
+        if (total > reportedDrops) {
+            plugin.getLogger().warning("Dropped " + (total - reportedDrops)
+                    + " transaction log entries because the log writer fell behind.");
+            reportedDrops = total;
+        }
+    }
+
+    /**
+     * An open log file of one category and day. Files of a day are numbered
+     * from 0 ({@code pay-2024-01-31.log}, {@code pay-2024-01-31.1.log}, ...);
+     * appending resumes in the highest existing one.
+     */
+    private final class Segment {
 
-                String fileName = category + "-" + now.format(dateFormatter) + ".log";
-                Path logFile = categoryDir.resolve(fileName);
+        final String category;
+        final LocalDate date;
+        final Path directory;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        FileChannel channel;
+        int index;
+        long size;
+        boolean dirty;
 
-                String logLine = String.format("[%s] %s%n", now.format(timeFormatter), message);
+        Segment(String category, LocalDate date) throws IOException {
+            this.category = category;
+            this.date = date;
+            // Create category directory if needed: logs/pay, logs/api, etc.
+            this.directory = logDirectory.resolve(category);
+            Files.createDirectories(directory);
+            while (Files.exists(file(index + 1))) {
+                index++;
+            }
+            open();
+        }
+
+        private Path file(int index) {
+            String day = category + "-" + date.format(dateFormatter);
+            return directory.resolve(index == 0 ? day + ".log" : day + "." + index + ".log");
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(file(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            size = channel.size();
+        }
 
-                Files.writeString(logFile, logLine,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.APPEND);
+        void append(String line) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    flush();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    result.throwException();
+                }
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                flush();
+            }
+        }
 
+        void flush() throws IOException {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    size += channel.write(buffer);
+                    dirty = true;
+                }
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        void roll() throws IOException {
+            flush();
+            if (fsync) {
+                channel.force(false);
+            }
+            channel.close();
+            index++;
+            dirty = false;
+            open();
+        }
+
+        void close() {
+            try {
+                flush();
+                if (fsync && dirty) {
+                    channel.force(false);
+                }
+                channel.close();
             } catch (IOException e) {
-                plugin.getLogger().warning("Failed to write to transaction log (" + category + "): " + e.getMessage());
+                plugin.getLogger().warning("Failed to close transaction log (" + category + "): " + e.getMessage());
             }
-        });
+        }
     }
 
     /**
      * Shutdown the logger gracefully
      */
     public void shutdown() {
-        executor.shutdown();
+        running = false;
         try {
-            if (!executor.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-                executor.shutdownNow();
-            }
+            writer.join(TimeUnit.SECONDS.toMillis(5));
         } catch (InterruptedException e) {
-            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (mappedLedger != null) {
+            mappedLedger.shutdown();
         }
     }
 }
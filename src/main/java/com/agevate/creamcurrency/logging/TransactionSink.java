@@ -0,0 +1,17 @@
+package com.agevate.creamcurrency.logging;
+
+import java.util.UUID;
+
+/**
+ * Destination for the structured transactions reported to the
+ * {@link TransactionLogger}. Amounts and balances are in storage units; a null
+ * balance means the side is absent or its balance is unknown.
+ */
+public interface TransactionSink {
+
+    /**
+     * Records a transaction. Must not block the caller.
+     */
+    void record(String type, UUID from, UUID to, String currencyId, long amount, Long fromBalance,
+            Long toBalance, String note);
+}
@@ -0,0 +1,37 @@
+package com.agevate.creamcurrency.sync;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A balance change made on one server, sent to the others.
+ * <p>
+ * {@code sequence} counts the updates of the origin server, so receivers can
+ * drop duplicates and notice lost updates. {@code balance} is the balance the
+ * origin committed and {@code delta} the change from the balance before it;
+ * an absolute update is a balance that was set rather than added to. Amounts
+ * are in storage units.
+ *
+ * @param origin the id of the server that made the change.
+ */
+public record BalanceUpdate(String origin, long sequence, UUID uuid, String currencyId, long delta, long balance,
+        boolean absolute) {
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(origin);
+        out.writeLong(sequence);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeUTF(currencyId);
+        out.writeLong(delta);
+        out.writeLong(balance);
+        out.writeBoolean(absolute);
+    }
+
+    public static BalanceUpdate readFrom(DataInput in) throws IOException {
+        return new BalanceUpdate(in.readUTF(), in.readLong(), new UUID(in.readLong(), in.readLong()), in.readUTF(),
+                in.readLong(), in.readLong(), in.readBoolean());
+    }
+}
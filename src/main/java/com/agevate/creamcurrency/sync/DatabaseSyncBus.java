@@ -0,0 +1,177 @@
+package com.agevate.creamcurrency.sync;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.database.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Change feed in the {@code cream_balance_changes} table of the shared
+ * database. Each server appends its updates and polls for rows of the others
+ * after the last id it has seen. Rows older than the retention period are
+ * deleted.
+ */
+public class DatabaseSyncBus implements SyncBus {
+
+    private static final String SQL_INSERT = "INSERT INTO cream_balance_changes "
+            + "(origin, sequence, player_uuid, currency_id, delta, balance, is_absolute, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_SELECT_MAX_ID = "SELECT MAX(id) FROM cream_balance_changes";
+
+    private static final String SQL_SELECT_CHANGES = "SELECT id, origin, sequence, player_uuid, currency_id, delta, "
+            + "balance, is_absolute FROM cream_balance_changes WHERE id > ? AND origin <> ? ORDER BY id LIMIT ?";
+
+    private static final String SQL_DELETE_OLD = "DELETE FROM cream_balance_changes WHERE created_at < ?";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final long PRUNE_INTERVAL_MS = 60_000;
+
+    private final CreamCurrency plugin;
+    private final CompletableFuture<Void> schemaReady;
+    private final String origin;
+    private final long pollIntervalMs;
+    private final long retentionMs;
+    private final BlockingQueue<BalanceUpdate> outgoing;
+    private final ScheduledExecutorService poller;
+
+    private Consumer<BalanceUpdate> listener;
+    // Poller thread only; -1 until the current end of the feed is known
+    private long lastId = -1;
+    private long lastPrune;
+
+    public DatabaseSyncBus(CreamCurrency plugin, CompletableFuture<Void> schemaReady, String origin) {
+        this.plugin = plugin;
+        this.schemaReady = schemaReady;
+        this.origin = origin;
+        this.pollIntervalMs = Math.max(50, plugin.getConfig().getLong("sync.poll-interval-ms", 500));
+        this.retentionMs = Math.max(30, plugin.getConfig().getLong("sync.retention-seconds", 300)) * 1000L;
+        this.outgoing = new ArrayBlockingQueue<>(Math.max(64, plugin.getConfig().getInt("sync.queue-capacity", 8192)));
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CreamCurrency-Sync");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start(Consumer<BalanceUpdate> listener) {
+        this.listener = listener;
+        poller.scheduleWithFixedDelay(this::tick, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(BalanceUpdate update) {
+        // Dropped updates show up as a sequence gap on the other servers
+        outgoing.offer(update);
+    }
+
+    private void tick() {
+        if (!schemaReady.isDone() || schemaReady.isCompletedExceptionally()) {
+            return;
+        }
+        try (Connection connection = plugin.getDatabase().getConnection()) {
+            if (lastId < 0) {
+                lastId = readMaxId(connection);
+            }
+            write(connection);
+            read(connection);
+
+            long now = System.currentTimeMillis();
+            if (now - lastPrune >= PRUNE_INTERVAL_MS) {
+                lastPrune = now;
+                try (PreparedStatement statement = connection.prepareStatement(SQL_DELETE_OLD)) {
+                    statement.setLong(1, now - retentionMs);
+                    statement.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to exchange balance updates with other servers", e);
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Unexpected error while applying balance updates", e);
+        }
+    }
+
+    private long readMaxId(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_MAX_ID);
+                ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void write(Connection connection) throws SQLException {
+        List<BalanceUpdate> batch = new ArrayList<>(BATCH_SIZE);
+        while (outgoing.drainTo(batch, BATCH_SIZE) > 0) {
+            long now = System.currentTimeMillis();
+            try (PreparedStatement statement = connection.prepareStatement(SQL_INSERT)) {
+                for (BalanceUpdate update : batch) {
+                    statement.setString(1, update.origin());
+                    statement.setLong(2, update.sequence());
+                    statement.setBytes(3, SchemaMigrator.uuidToBytes(update.uuid()));
+                    statement.setString(4, update.currencyId());
+                    statement.setLong(5, update.delta());
+                    statement.setLong(6, update.balance());
+                    statement.setBoolean(7, update.absolute());
+                    statement.setLong(8, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            batch.clear();
+        }
+    }
+
+    private void read(Connection connection) throws SQLException {
+        int rows;
+        do {
+            rows = 0;
+            try (PreparedStatement statement = connection.prepareStatement(SQL_SELECT_CHANGES)) {
+                statement.setLong(1, lastId);
+                statement.setString(2, origin);
+                statement.setInt(3, BATCH_SIZE);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastId = rs.getLong(1);
+                        listener.accept(new BalanceUpdate(rs.getString(2), rs.getLong(3),
+                                SchemaMigrator.uuidFromBytes(rs.getBytes(4)), rs.getString(5), rs.getLong(6),
+                                rs.getLong(7), rs.getBoolean(8)));
+                    }
+                }
+            }
+        } while (rows == BATCH_SIZE);
+    }
+
+    @Override
+    public void shutdown() {
+        poller.shutdown();
+        try {
+            if (!poller.awaitTermination(5, TimeUnit.SECONDS)) {
+                poller.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            poller.shutdownNow();
+        }
+        // Send what is left so the other servers see the last changes
+        if (!outgoing.isEmpty() && schemaReady.isDone() && !schemaReady.isCompletedExceptionally()) {
+            try (Connection connection = plugin.getDatabase().getConnection()) {
+                write(connection);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to send the last balance updates", e);
+            }
+        }
+    }
+}
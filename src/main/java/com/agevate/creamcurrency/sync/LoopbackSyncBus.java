@@ -0,0 +1,39 @@
+package com.agevate.creamcurrency.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers updates to the other loopback buses of the same JVM, for testing
+ * several plugin instances in one process. Delivery happens on the publishing
+ * thread.
+ */
+public class LoopbackSyncBus implements SyncBus {
+
+    private static final List<LoopbackSyncBus> BUSES = new CopyOnWriteArrayList<>();
+
+    private volatile Consumer<BalanceUpdate> listener;
+
+    @Override
+    public void start(Consumer<BalanceUpdate> listener) {
+        this.listener = listener;
+        BUSES.add(this);
+    }
+
+    @Override
+    public void publish(BalanceUpdate update) {
+        for (LoopbackSyncBus bus : BUSES) {
+            Consumer<BalanceUpdate> target = bus.listener;
+            if (bus != this && target != null) {
+                target.accept(update);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        BUSES.remove(this);
+        listener = null;
+    }
+}
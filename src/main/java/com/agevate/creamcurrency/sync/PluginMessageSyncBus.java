@@ -0,0 +1,142 @@
+package com.agevate.creamcurrency.sync;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Sends updates through the proxy with the BungeeCord {@code Forward}
+ * message, which Velocity supports as well. Updates queued during a tick go
+ * out as one message on the next tick.
+ * <p>
+ * Plugin messages travel through a connected player, so nothing is sent while
+ * this server is empty and nothing is received by an empty server. Receivers
+ * notice the missed updates from the sequence numbers.
+ */
+public class PluginMessageSyncBus implements SyncBus, PluginMessageListener {
+
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "CreamCurrencySync";
+    // Stays well below the 32 KiB plugin message limit
+    private static final int MAX_MESSAGE_BYTES = 30_000;
+
+    private final CreamCurrency plugin;
+    private final Queue<BalanceUpdate> outgoing = new ConcurrentLinkedQueue<>();
+    private Consumer<BalanceUpdate> listener;
+    private BukkitTask flushTask;
+
+    public PluginMessageSyncBus(CreamCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void start(Consumer<BalanceUpdate> listener) {
+        this.listener = listener;
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, 1L, 1L);
+    }
+
+    @Override
+    public void publish(BalanceUpdate update) {
+        outgoing.add(update);
+    }
+
+    private void flush() {
+        if (outgoing.isEmpty()) {
+            return;
+        }
+        Iterator<? extends Player> players = Bukkit.getOnlinePlayers().iterator();
+        if (!players.hasNext()) {
+            // No connection to the proxy; the other servers see the gap
+            outgoing.clear();
+            return;
+        }
+        Player carrier = players.next();
+
+        List<BalanceUpdate> batch = new ArrayList<>();
+        int size = 0;
+        BalanceUpdate update;
+        while ((update = outgoing.poll()) != null) {
+            batch.add(update);
+            // Rough upper bound of one encoded update
+            size += 64 + update.origin().length() + update.currencyId().length();
+            if (size >= MAX_MESSAGE_BYTES) {
+                send(carrier, batch);
+                batch.clear();
+                size = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(carrier, batch);
+        }
+    }
+
+    private void send(Player carrier, List<BalanceUpdate> batch) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream updates = new DataOutputStream(payload);
+            updates.writeInt(batch.size());
+            for (BalanceUpdate update : batch) {
+                update.writeTo(updates);
+            }
+
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(message);
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(payload.size());
+            out.write(payload.toByteArray());
+            carrier.sendPluginMessage(plugin, CHANNEL, message.toByteArray());
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to encode balance updates: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        if (!CHANNEL.equals(channel) || listener == null) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+            if (!SUBCHANNEL.equals(in.readUTF())) {
+                return;
+            }
+            byte[] payload = new byte[in.readUnsignedShort()];
+            in.readFully(payload);
+            DataInputStream updates = new DataInputStream(new ByteArrayInputStream(payload));
+            int count = updates.readInt();
+            for (int i = 0; i < count; i++) {
+                listener.accept(BalanceUpdate.readFrom(updates));
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Received a malformed balance update message: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flush();
+        }
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin, CHANNEL, this);
+    }
+}
@@ -0,0 +1,22 @@
+package com.agevate.creamcurrency.sync;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport for balance updates between servers that share a database.
+ * Delivery is best effort; receivers detect gaps from the sequence numbers.
+ */
+public interface SyncBus {
+
+    /**
+     * Starts delivering updates from other servers to the listener.
+     */
+    void start(Consumer<BalanceUpdate> listener);
+
+    /**
+     * Sends an update of this server. Must not block the caller.
+     */
+    void publish(BalanceUpdate update);
+
+    void shutdown();
+}
@@ -0,0 +1,146 @@
+package com.agevate.creamcurrency.sync;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.cache.BalanceCache;
+import com.agevate.creamcurrency.cache.LeaderboardCache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Keeps the balance cache and leaderboard of this server in step with the
+ * changes other servers make to the shared database.
+ * <p>
+ * Every local change is published with the next sequence number of this
+ * server. A received update only moves a cached balance to the committed
+ * balance if the cached one is the balance the change started from (or
+ * already the committed one); any other cached value means changes from
+ * several servers interleaved, and the key is loaded from the database
+ * again. If updates of a server went missing, the balance cache is cleared.
+ */
+public class SyncManager {
+
+    private final CreamCurrency plugin;
+    private final BalanceCache cache;
+    private final LeaderboardCache leaderboard;
+    private final SyncBus bus;
+    // Id of this server, new on every start
+    private final String origin;
+    // Numbering and handing an update to the bus happen together, so the bus sees sequences in order
+    private final Object publishLock = new Object();
+    private long sequence;
+
+    // Last sequence applied per origin server
+    private final Map<String, Long> applied = new HashMap<>();
+
+    private SyncManager(CreamCurrency plugin, BalanceCache cache, LeaderboardCache leaderboard, SyncBus bus,
+            String origin) {
+        this.plugin = plugin;
+        this.origin = origin;
+        this.cache = cache;
+        this.leaderboard = leaderboard;
+        this.bus = bus;
+    }
+
+    /**
+     * Creates and starts the manager for the configured {@code sync.type}.
+     *
+     * @return the manager, or null if synchronization is disabled.
+     */
+    public static SyncManager create(CreamCurrency plugin, BalanceCache cache, LeaderboardCache leaderboard,
+            CompletableFuture<Void> schemaReady) {
+        String type = plugin.getConfig().getString("sync.type", "NONE").toUpperCase();
+        if (type.equals("NONE")) {
+            return null;
+        }
+        if (plugin.getConfig().getBoolean("database.write-behind.enabled", false)) {
+            // Write-behind keeps the authoritative balance in this server's memory
+            plugin.getLogger().warning("Balance sync is not available with write-behind enabled, sync is disabled.");
+            return null;
+        }
+
+        String origin = UUID.randomUUID().toString();
+        SyncBus bus;
+        switch (type) {
+            case "DATABASE":
+                bus = new DatabaseSyncBus(plugin, schemaReady, origin);
+                break;
+            case "PLUGIN_MESSAGE":
+                bus = new PluginMessageSyncBus(plugin);
+                break;
+            case "LOOPBACK":
+                bus = new LoopbackSyncBus();
+                break;
+            default:
+                plugin.getLogger().warning("Unknown sync.type '" + type + "', sync is disabled.");
+                return null;
+        }
+
+        SyncManager manager = new SyncManager(plugin, cache, leaderboard, bus, origin);
+        bus.start(manager::receive);
+        plugin.getLogger().info("Balance sync enabled (" + type + ").");
+        return manager;
+    }
+
+    /**
+     * Publishes a change of a balance made on this server.
+     *
+     * @param delta   the amount added, in storage units.
+     * @param balance the resulting balance, in storage units.
+     */
+    public void publishDelta(UUID uuid, String currencyId, long delta, long balance) {
+        publish(uuid, currencyId, delta, balance, false);
+    }
+
+    /**
+     * Publishes a balance that was set on this server.
+     *
+     * @param delta   the difference to the balance replaced, in storage units.
+     * @param balance the balance set, in storage units.
+     */
+    public void publishSet(UUID uuid, String currencyId, long delta, long balance) {
+        publish(uuid, currencyId, delta, balance, true);
+    }
+
+    private void publish(UUID uuid, String currencyId, long delta, long balance, boolean absolute) {
+        synchronized (publishLock) {
+            bus.publish(new BalanceUpdate(origin, ++sequence, uuid, currencyId, delta, balance, absolute));
+        }
+    }
+
+    private synchronized void receive(BalanceUpdate update) {
+        if (update.origin().equals(origin)) {
+            return;
+        }
+        Long last = applied.get(update.origin());
+        if (last != null && update.sequence() <= last) {
+            // Already applied
+            return;
+        }
+        applied.put(update.origin(), update.sequence());
+
+        if (last != null && update.sequence() > last + 1) {
+            plugin.getLogger().fine("Missed " + (update.sequence() - last - 1) + " balance updates from server "
+                    + update.origin() + ", reloading cached balances.");
+            cache.clear();
+        }
+
+        String currencyId = update.currencyId();
+        // Players not cached here are left to load from the database
+        if (cache.contains(update.uuid(), currencyId)) {
+            cache.applyCommitted(update.uuid(), currencyId, update.delta(), update.balance());
+        }
+        leaderboard.update(update.uuid(), null, currencyId, update.balance());
+    }
+
+    public void shutdown() {
+        try {
+            bus.shutdown();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to stop balance sync", e);
+        }
+    }
+}
@@ -4,9 +4,16 @@ import com.agevate.creamcurrency.CreamCurrency;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
 /**
  * Handles player-related events for cache management and optimization.
  */
@@ -18,18 +25,46 @@ public class PlayerListener implements Listener {
         this.plugin = plugin;
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        // Runs off the main thread, so we can wait for the data to be warm before spawn,
+        // but never longer than the timeout: the join fallback and lazy loads cover the rest
+        long timeoutMs = Math.max(0, plugin.getConfig().getLong("cache.preload-timeout-ms", 3000));
+        try {
+            plugin.getPlayerDataDAO().loadPlayer(event.getUniqueId()).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Loading data of " + event.getName() + " took longer than " + timeoutMs
+                    + "ms, letting them in and loading it in the background.");
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to preload data of " + event.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        // Drop data preloaded for a login that was refused later (whitelist, bans, full server)
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            plugin.getPlayerDataDAO().unloadPlayer(event.getPlayer().getUniqueId());
+        }
+    }
+
     @EventHandler(priority = EventPriority.LOWEST)
     public void onJoin(PlayerJoinEvent event) {
-        // Pre-load primary currency balance asynchronously
-        var primary = plugin.getCurrencyManager().getPrimaryCurrency();
-        if (primary != null) {
-            plugin.getPlayerDataDAO().getBalance(event.getPlayer().getUniqueId(), primary.getId());
+        // Fallback if the pre-login load failed or the cache was cleared since
+        var uuid = event.getPlayer().getUniqueId();
+        if (!plugin.getPlayerDataDAO().getCache().isPlayerCached(uuid)) {
+            plugin.getPlayerDataDAO().loadPlayer(uuid);
         }
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onQuit(PlayerQuitEvent event) {
         // Clear player cache to prevent memory leaks
-        plugin.getPlayerDataDAO().getCache().invalidatePlayer(event.getPlayer().getUniqueId());
+        plugin.getPlayerDataDAO().unloadPlayer(event.getPlayer().getUniqueId());
     }
 }
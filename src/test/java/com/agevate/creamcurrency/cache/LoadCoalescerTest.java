@@ -0,0 +1,213 @@
+package com.agevate.creamcurrency.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadCoalescerTest {
+
+    private static final int PLAYERS = 1000;
+    private static final int CALLERS_PER_PLAYER = 10;
+    private static final long START_BALANCE = 100;
+
+    @TempDir
+    Path dataFolder;
+
+    private String url;
+    private ExecutorService databasePool;
+    private ExecutorService callers;
+    private final List<Connection> connections = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:sqlite:" + dataFolder.resolve("database.db");
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("CREATE TABLE cream_balances (player_uuid BLOB NOT NULL, currency_id VARCHAR(32) NOT NULL, "
+                    + "balance BIGINT NOT NULL, PRIMARY KEY (player_uuid, currency_id))");
+        }
+        // Same shape as the DAO's pool: a few threads, far fewer than the callers
+        databasePool = Executors.newFixedThreadPool(4);
+        callers = Executors.newFixedThreadPool(64);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        databasePool.shutdownNow();
+        callers.shutdownNow();
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    void tenThousandConcurrentFirstTimeLoadsShareOneQueryPerPlayer() throws Exception {
+        List<UUID> players = new ArrayList<>(PLAYERS);
+        try (Connection connection = DriverManager.getConnection(url);
+                PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO cream_balances (player_uuid, currency_id, balance) VALUES (?, 'money', ?)")) {
+            for (int i = 0; i < PLAYERS; i++) {
+                UUID uuid = UUID.randomUUID();
+                players.add(uuid);
+                // Every other player has never been stored and gets the start balance
+                if (i % 2 == 0) {
+                    insert.setBytes(1, toBytes(uuid));
+                    insert.setLong(2, i);
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        LoadCoalescer<UUID, Long> coalescer = new LoadCoalescer<>(500, 30000);
+        Map<UUID, AtomicInteger> queries = new ConcurrentHashMap<>();
+        ThreadLocal<Connection> connection = ThreadLocal.withInitial(this::open);
+        // Loads wait until every caller has asked, so all of them overlap with a load in flight
+        CountDownLatch allAsked = new CountDownLatch(PLAYERS * CALLERS_PER_PLAYER);
+
+        List<CompletableFuture<CompletableFuture<Long>>> requests = new ArrayList<>();
+        for (int round = 0; round < CALLERS_PER_PLAYER; round++) {
+            for (UUID uuid : players) {
+                requests.add(CompletableFuture.supplyAsync(() -> {
+                    CompletableFuture<Long> result = coalescer.load(uuid, () -> CompletableFuture.supplyAsync(() -> {
+                        queries.computeIfAbsent(uuid, key -> new AtomicInteger()).incrementAndGet();
+                        await(allAsked);
+                        return select(connection.get(), uuid);
+                    }, databasePool));
+                    allAsked.countDown();
+                    return result;
+                }, callers));
+            }
+        }
+
+        CompletableFuture<?>[] results = new CompletableFuture<?>[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            results[i] = requests.get(i).get(30, TimeUnit.SECONDS);
+        }
+        CompletableFuture.allOf(results).get(30, TimeUnit.SECONDS);
+
+        assertEquals(PLAYERS, queries.size());
+        queries.forEach((uuid, count) -> assertEquals(1, count.get(), "queries for " + uuid));
+        for (int i = 0; i < requests.size(); i++) {
+            int player = i % PLAYERS;
+            long expected = player % 2 == 0 ? player : START_BALANCE;
+            assertEquals(expected, (long) requests.get(i).join().join());
+        }
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void failedLoadFailsEveryWaiterAndReleasesTheKey() {
+        LoadCoalescer<String, Long> coalescer = new LoadCoalescer<>(500, 30000);
+        CompletableFuture<Long> query = new CompletableFuture<>();
+
+        CompletableFuture<Long> first = coalescer.load("key", () -> query);
+        CompletableFuture<Long> second = coalescer.load("key", () -> {
+            throw new AssertionError("a second query was started");
+        });
+        query.completeExceptionally(new SQLException("database is locked"));
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        assertEquals(0, coalescer.inFlight());
+
+        CompletableFuture<Long> retry = coalescer.load("key", () -> CompletableFuture.completedFuture(7L));
+        assertNotSame(first, retry);
+        assertEquals(7L, retry.join());
+    }
+
+    @Test
+    void backoffDoublesPerFailureUpToTheLimitAndResetsOnSuccess() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        LoadCoalescer<String, Long> coalescer = new LoadCoalescer<>(500, 2000, now::get);
+        assertFalse(coalescer.isBackingOff());
+
+        long[] expected = { 500, 1000, 2000, 2000 };
+        for (long backoff : expected) {
+            coalescer.failed();
+            now.addAndGet(backoff - 1);
+            assertTrue(coalescer.isBackingOff());
+            now.incrementAndGet();
+            assertFalse(coalescer.isBackingOff());
+        }
+
+        coalescer.succeeded();
+        coalescer.failed();
+        now.addAndGet(500);
+        assertFalse(coalescer.isBackingOff());
+    }
+
+    private Connection open() {
+        try {
+            Connection connection = DriverManager.getConnection(url);
+            synchronized (connections) {
+                connections.add(connection);
+            }
+            return connection;
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static long select(Connection connection, UUID uuid) {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT balance FROM cream_balances WHERE player_uuid = ? AND currency_id = 'money'")) {
+            statement.setBytes(1, toBytes(uuid));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : START_BALANCE;
+            }
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS)) {
+                throw new AssertionError("callers did not all ask within 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,149 @@
+package com.agevate.creamcurrency.currency;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks {@link CurrencyFormatter} against {@link DecimalFormat}, which it
+ * replaced and must match digit for digit.
+ */
+class CurrencyFormatterTest {
+
+    // The default currency's pattern, the compact style, and common variants
+    private static final String[] PATTERNS = { "#,##0.00", "#,##0.##", "#,##0", "0.00", "#,##0.####", "#.##",
+            "#,##0.0#", "000.00", "#,##0.###" };
+
+    private static final String[] COMPACT_SUFFIXES = { "", "K", "M", "B", "T" };
+
+    private static final int RANDOM_VALUES = 20_000;
+
+    @Test
+    void randomValuesMatchDecimalFormat() {
+        Random random = new Random(42);
+        for (String pattern : PATTERNS) {
+            CurrencyFormatter formatter = CurrencyFormatter.compile(pattern, "", true);
+            DecimalFormat reference = reference(pattern);
+            for (int i = 0; i < RANDOM_VALUES; i++) {
+                // Spread over every magnitude, not just the large ones
+                long units = random.nextLong() >> random.nextInt(63);
+                int scale = random.nextInt(Money.STORAGE_SCALE + 1);
+                assertMatches(pattern, formatter, reference, units, scale);
+            }
+        }
+    }
+
+    @Test
+    void negativesMatchDecimalFormat() {
+        for (String pattern : PATTERNS) {
+            CurrencyFormatter formatter = CurrencyFormatter.compile(pattern, "", true);
+            DecimalFormat reference = reference(pattern);
+            for (long units : new long[] { -1, -5, -49, -50, -51, -99, -100, -12_345, -1_000_000, -999_999_999_999L,
+                    Long.MIN_VALUE + 1, Long.MIN_VALUE }) {
+                for (int scale = 0; scale <= Money.STORAGE_SCALE; scale++) {
+                    assertMatches(pattern, formatter, reference, units, scale);
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundingTiesAreHalfEven() {
+        for (String pattern : PATTERNS) {
+            CurrencyFormatter formatter = CurrencyFormatter.compile(pattern, "", true);
+            DecimalFormat reference = reference(pattern);
+            // x.xx5 and x.xxx5 ties, on both even and odd last digits
+            for (long base = 0; base < 200; base++) {
+                for (int scale = 1; scale <= Money.STORAGE_SCALE; scale++) {
+                    long tie = base * 10 + 5;
+                    assertMatches(pattern, formatter, reference, tie, scale);
+                    assertMatches(pattern, formatter, reference, -tie, scale);
+                    assertMatches(pattern, formatter, reference, tie * 1000 + 500, Money.STORAGE_SCALE);
+                }
+            }
+        }
+    }
+
+    @Test
+    void groupingMatchesDecimalFormat() {
+        for (String pattern : PATTERNS) {
+            CurrencyFormatter formatter = CurrencyFormatter.compile(pattern, "", true);
+            DecimalFormat reference = reference(pattern);
+            // Every digit count, and the values around each group boundary
+            for (long power = 1; power > 0 && power <= Long.MAX_VALUE / 10; power *= 10) {
+                for (long units : new long[] { power - 1, power, power + 1, power * 9 + (power - 1) }) {
+                    assertMatches(pattern, formatter, reference, units, 0);
+                    assertMatches(pattern, formatter, reference, units, 2);
+                    assertMatches(pattern, formatter, reference, units, Money.STORAGE_SCALE);
+                }
+            }
+            assertMatches(pattern, formatter, reference, Long.MAX_VALUE, 0);
+        }
+    }
+
+    @Test
+    void symbolIsPlacedOnTheConfiguredSide() {
+        assertEquals("$1,234.50", CurrencyFormatter.compile("#,##0.00", "$", true).format(123_450, 2));
+        assertEquals("1,234.50 Gems", CurrencyFormatter.compile("#,##0.00", " Gems", false).format(123_450, 2));
+    }
+
+    @Test
+    void doublesAreFormattedLikeDecimalFormat() {
+        Random random = new Random(7);
+        for (String pattern : PATTERNS) {
+            CurrencyFormatter formatter = CurrencyFormatter.compile(pattern, "", true);
+            DecimalFormat reference = reference(pattern);
+            for (int i = 0; i < RANDOM_VALUES; i++) {
+                // Balances with four decimals, and doubles with six
+                long units = random.nextLong(-1_000_000_000_000L, 1_000_000_000_000L);
+                double amount = i % 2 == 0
+                        ? Money.storageUnitsToDouble(units)
+                        : units / 1_000_000.0;
+                assertEquals(reference.format(amount), formatter.format(amount), pattern + " " + amount);
+            }
+        }
+    }
+
+    @Test
+    void doublesAreRoundedOnce() {
+        CurrencyFormatter formatter = CurrencyFormatter.compile("#,##0.00", "", true);
+        // 1.0150 after rounding to four decimals, which would round up to 1.02
+        assertEquals("1.01", formatter.format(1.01499));
+        assertEquals("-1.01", formatter.format(-1.01499));
+        assertEquals("-0.00", formatter.format(-0.001));
+    }
+
+    @Test
+    void compactMatchesDecimalFormatOfTheScaledValue() {
+        CurrencyFormatter formatter = CurrencyFormatter.compile("#,##0.00", "$", true);
+        DecimalFormat reference = reference("#,##0.##");
+        Random random = new Random(3);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            long units = Math.abs(random.nextLong() >> random.nextInt(63));
+            BigDecimal amount = BigDecimal.valueOf(units, Money.STORAGE_SCALE);
+            int step = 0;
+            while (step < COMPACT_SUFFIXES.length - 1
+                    && amount.compareTo(BigDecimal.TEN.pow(3 * (step + 1))) >= 0) {
+                step++;
+            }
+            String expected = reference.format(amount.movePointLeft(3 * step)) + COMPACT_SUFFIXES[step] + "$";
+            assertEquals(expected, formatter.formatCompact(units), "compact " + amount);
+        }
+    }
+
+    private static void assertMatches(String pattern, CurrencyFormatter formatter, DecimalFormat reference,
+            long units, int scale) {
+        BigDecimal amount = BigDecimal.valueOf(units, scale);
+        assertEquals(reference.format(amount), formatter.format(units, scale), pattern + " " + amount.toPlainString());
+    }
+
+    private static DecimalFormat reference(String pattern) {
+        return new DecimalFormat(pattern, new DecimalFormatSymbols(Locale.US));
+    }
+}
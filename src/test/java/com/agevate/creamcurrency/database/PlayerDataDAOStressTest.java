@@ -0,0 +1,289 @@
+package com.agevate.creamcurrency.database;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import com.agevate.creamcurrency.currency.Currency;
+import com.agevate.creamcurrency.currency.CurrencyManager;
+import com.agevate.creamcurrency.currency.Money;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires 10,000 concurrent first-time {@link PlayerDataDAO#addBalance} calls
+ * at an SQLite file through the DAO's own pool. Every call has to create the
+ * player's row on the connection it holds; if a pool thread waited on a task
+ * queued behind it, the burst would not finish.
+ * <p>
+ * The plugin is created without running its constructor (which needs a
+ * server) and only gets the fields the DAO uses; the server is a proxy that
+ * answers the few Bukkit calls the DAO makes.
+ */
+class PlayerDataDAOStressTest {
+
+    private static final int CALLS = 10_000;
+    private static final int CALLERS = 64;
+    private static final long START_BALANCE = 100;
+
+    @TempDir
+    Path dataFolder;
+
+    private CreamCurrency plugin;
+    private SQLiteDatabase database;
+    private PlayerDataDAO dao;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (Bukkit.getServer() == null) {
+            Bukkit.setServer(server());
+        }
+
+        File currencyFile = dataFolder.resolve("money.yml").toFile();
+        Files.writeString(currencyFile.toPath(), "name: \"Money\"\nstart-balance: " + START_BALANCE + "\n");
+        CurrencyManager currencyManager = new CurrencyManager(null);
+        @SuppressWarnings("unchecked")
+        Map<String, Currency> currencies = (Map<String, Currency>) get(currencyManager, "currencies");
+        currencies.put("money", new Currency("money", currencyFile));
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("database.type", "SQLITE");
+        config.set("database.write-behind.enabled", false);
+        config.set("database.virtual-threads.enabled", false);
+
+        plugin = allocate(CreamCurrency.class);
+        set(plugin, "dataFolder", dataFolder.toFile());
+        set(plugin, "newConfig", config);
+        set(plugin, "server", Bukkit.getServer());
+        Field logger = field(JavaPlugin.class, "logger");
+        // A plain Logger on Paper, a PluginLogger on older Bukkit
+        logger.set(plugin, logger.getType().isAssignableFrom(Logger.class)
+                ? Logger.getLogger("CreamCurrency")
+                : logger.getType().getConstructor(Plugin.class).newInstance(plugin));
+        set(plugin, "currencyManager", currencyManager);
+
+        database = new SQLiteDatabase(plugin);
+        set(plugin, "database", database);
+        dao = new PlayerDataDAO(plugin);
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (dao != null) {
+            dao.shutdown();
+        }
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    void tenThousandConcurrentFirstTimeAddsFinish() throws Exception {
+        List<UUID> players = new ArrayList<>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            players.add(UUID.randomUUID());
+        }
+
+        List<CompletableFuture<Double>> results = fire(players);
+
+        for (CompletableFuture<Double> result : results) {
+            assertEquals(START_BALANCE + 1.0, result.get(), 0.0);
+        }
+        assertStored(players, START_BALANCE + 1);
+        assertEquals(CALLS, count("SELECT COUNT(*) FROM cream_balances"));
+        assertEquals(CALLS, count("SELECT COUNT(*) FROM cream_transactions"));
+    }
+
+    @Test
+    void concurrentFirstTimeAddsToTheSamePlayersAreAllApplied() throws Exception {
+        int perPlayer = 10;
+        List<UUID> players = new ArrayList<>(CALLS / perPlayer);
+        for (int i = 0; i < CALLS / perPlayer; i++) {
+            players.add(UUID.randomUUID());
+        }
+        List<UUID> calls = new ArrayList<>(CALLS);
+        for (int round = 0; round < perPlayer; round++) {
+            calls.addAll(players);
+        }
+
+        List<CompletableFuture<Double>> results = fire(calls);
+
+        for (CompletableFuture<Double> result : results) {
+            double balance = result.get();
+            if (balance < START_BALANCE + 1 || balance > START_BALANCE + perPlayer) {
+                throw new AssertionError("unexpected balance " + balance);
+            }
+        }
+        assertStored(players, START_BALANCE + perPlayer);
+        assertEquals(players.size(), count("SELECT COUNT(*) FROM cream_balances"));
+        assertEquals(CALLS, count("SELECT COUNT(*) FROM cream_transactions"));
+    }
+
+    /**
+     * Adds 1 to each player in the list, all callers released at once, and
+     * waits for every call to finish.
+     */
+    private List<CompletableFuture<Double>> fire(List<UUID> calls) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<CompletableFuture<Double>>> submitted = new ArrayList<>(calls.size());
+        for (UUID uuid : calls) {
+            submitted.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return dao.addBalance(uuid, "money", 1.0);
+            }, callers));
+        }
+        start.countDown();
+
+        List<CompletableFuture<Double>> results = new ArrayList<>(calls.size());
+        for (CompletableFuture<CompletableFuture<Double>> call : submitted) {
+            results.add(call.get(60, TimeUnit.SECONDS));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private void assertStored(List<UUID> players, long expected) throws SQLException {
+        try (Connection connection = database.getReadConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT balance FROM cream_balances WHERE player_uuid = ? AND currency_id = 'money'")) {
+            for (UUID uuid : players) {
+                statement.setBytes(1, SchemaMigrator.uuidToBytes(uuid));
+                try (ResultSet rs = statement.executeQuery()) {
+                    assertEquals(true, rs.next(), "row of " + uuid);
+                    assertEquals(expected * Money.storageFactor(), rs.getLong(1), "balance of " + uuid);
+                }
+            }
+        }
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection connection = database.getReadConnection();
+                PreparedStatement statement = connection.prepareStatement(sql);
+                ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Server server() {
+        BukkitTask task = proxy(BukkitTask.class, null);
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, task);
+        return (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[] { Server.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLogger":
+                            return Logger.getLogger("Server");
+                        case "getScheduler":
+                            return scheduler;
+                        case "getOfflinePlayer":
+                            return args[0] instanceof UUID uuid ? offlinePlayer(uuid) : null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    // Scheduler calls return the given task; the repeating DAO tasks never run
+    private static <T> T proxy(Class<T> type, Object result) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    if (method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    if (method.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    return method.getReturnType().isInstance(result) ? result : null;
+                }));
+    }
+
+    private static OfflinePlayer offlinePlayer(UUID uuid) {
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(),
+                new Class<?>[] { OfflinePlayer.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getUniqueId":
+                            return uuid;
+                        case "getName":
+                            return uuid.toString().substring(0, 16);
+                        case "hashCode":
+                            return uuid.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static <T> T allocate(Class<T> type) throws Exception {
+        Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        sun.misc.Unsafe unsafe = (sun.misc.Unsafe) unsafeField.get(null);
+        return type.cast(unsafe.allocateInstance(type));
+    }
+
+    private static Object get(Object target, String name) throws ReflectiveOperationException {
+        return field(target.getClass(), name).get(target);
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        field(target.getClass(), name).set(target, value);
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Declared further up
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
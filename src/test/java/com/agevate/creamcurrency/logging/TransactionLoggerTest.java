@@ -0,0 +1,209 @@
+package com.agevate.creamcurrency.logging;
+
+import com.agevate.creamcurrency.CreamCurrency;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionLoggerTest {
+
+    private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path dataFolder;
+
+    @Test
+    void utf8LengthMatchesTheEncodedBytes() {
+        String[] lines = { "", "[12:00:00] Steve paid Alex $10.00", "Çağrı İşçi öğrenci ğüşıöç", "€ ₺ ¥",
+                "gems 💎 and 🍦" };
+        for (String line : lines) {
+            int expected = line.getBytes(StandardCharsets.UTF_8).length;
+            assertEquals(expected, TransactionLogger.utf8Length(line), line);
+        }
+    }
+
+    @Test
+    void filesRollOverAtMidnight() throws Exception {
+        SettableClock clock = new SettableClock(Instant.parse("2024-01-31T23:59:59Z"));
+        TransactionLogger logger = new TransactionLogger(plugin(config()), clock);
+
+        pay(logger, 1);
+        clock.now = Instant.parse("2024-02-01T00:00:01Z");
+        pay(logger, 2);
+        logger.shutdown();
+
+        Path pay = dataFolder.resolve("logs").resolve("pay");
+        List<String> before = Files.readAllLines(pay.resolve("pay-2024-01-31.log"));
+        List<String> after = Files.readAllLines(pay.resolve("pay-2024-02-01.log"));
+        assertEquals(1, before.size());
+        assertTrue(before.get(0).startsWith("[23:59:59] [PAY]"), before.get(0));
+        assertTrue(before.get(0).endsWith("Amount: 1.00"), before.get(0));
+        assertEquals(1, after.size());
+        assertTrue(after.get(0).startsWith("[00:00:01] [PAY]"), after.get(0));
+        assertTrue(after.get(0).endsWith("Amount: 2.00"), after.get(0));
+    }
+
+    @Test
+    void filesRollOverAtTheSizeLimit() throws Exception {
+        YamlConfiguration config = config();
+        config.set("logging.max-file-size-mb", 1);
+        TransactionLogger logger = new TransactionLogger(plugin(config),
+                Clock.fixed(Instant.parse("2024-01-31T12:00:00Z"), ZoneOffset.UTC));
+
+        // About 1.5 MiB of lines, well within the queue so none are dropped
+        int entries = 10_000;
+        for (int i = 0; i < entries; i++) {
+            pay(logger, i);
+        }
+        logger.shutdown();
+
+        Path pay = dataFolder.resolve("logs").resolve("pay");
+        Path first = pay.resolve("pay-2024-01-31.log");
+        Path second = pay.resolve("pay-2024-01-31.1.log");
+        assertTrue(Files.size(first) <= MAX_FILE_SIZE, "first file is " + Files.size(first) + " bytes");
+        assertTrue(Files.size(second) <= MAX_FILE_SIZE, "second file is " + Files.size(second) + " bytes");
+        assertTrue(Files.notExists(pay.resolve("pay-2024-01-31.2.log")));
+
+        // The first file rolled because the next line did not fit
+        List<String> firstLines = Files.readAllLines(first);
+        List<String> secondLines = Files.readAllLines(second);
+        int lineBytes = TransactionLogger.utf8Length(secondLines.get(0) + System.lineSeparator());
+        assertTrue(Files.size(first) + lineBytes > MAX_FILE_SIZE);
+        assertEquals(entries, firstLines.size() + secondLines.size());
+        assertTrue(firstLines.get(0).endsWith("Amount: 0.00"), firstLines.get(0));
+        assertTrue(secondLines.get(secondLines.size() - 1).endsWith("Amount: " + (entries - 1) + ".00"));
+        assertEquals(0, logger.getDroppedCount());
+    }
+
+    @Test
+    void entriesAreDroppedWhenTheQueueIsFull() throws Exception {
+        int capacity = 64;
+        int extra = 10;
+        YamlConfiguration config = config();
+        config.set("logging.queue-capacity", capacity);
+        BlockingClock clock = new BlockingClock();
+        TransactionLogger logger = new TransactionLogger(plugin(config), clock);
+
+        // The writer takes the first entry and stops on the clock, so the queue fills up
+        pay(logger, 0);
+        assertTrue(clock.writing.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= capacity + extra; i++) {
+            pay(logger, i);
+        }
+        assertEquals(extra, logger.getDroppedCount());
+
+        clock.release.countDown();
+        logger.shutdown();
+        List<String> lines = Files.readAllLines(dataFolder.resolve("logs").resolve("pay")
+                .resolve("pay-2024-01-31.log"));
+        assertEquals(1 + capacity, lines.size());
+        assertTrue(lines.get(lines.size() - 1).endsWith("Amount: " + capacity + ".00"));
+    }
+
+    private static void pay(TransactionLogger logger, int amount) {
+        logger.logPayment(new UUID(0, 1), "Steve", new UUID(0, 2), "Alex", "money", amount, 0, 0);
+    }
+
+    private static YamlConfiguration config() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("logging.fsync", false);
+        config.set("logging.queue-capacity", 16384);
+        return config;
+    }
+
+    // Only the fields the logger reads; the constructor needs a running server
+    private CreamCurrency plugin(YamlConfiguration config) throws Exception {
+        Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        sun.misc.Unsafe unsafe = (sun.misc.Unsafe) unsafeField.get(null);
+        CreamCurrency plugin = (CreamCurrency) unsafe.allocateInstance(CreamCurrency.class);
+        field("dataFolder").set(plugin, dataFolder.toFile());
+        field("newConfig").set(plugin, config);
+        Field logger = field("logger");
+        // A plain Logger on Paper, a PluginLogger on older Bukkit
+        logger.set(plugin, logger.getType().isAssignableFrom(Logger.class)
+                ? Logger.getLogger("CreamCurrency")
+                : logger.getType().getConstructor(Plugin.class).newInstance(plugin));
+        return plugin;
+    }
+
+    private static Field field(String name) throws NoSuchFieldException {
+        Field field = JavaPlugin.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static final class SettableClock extends Clock {
+
+        volatile Instant now;
+
+        SettableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A fixed clock whose zone lookup, made by the writer for every entry,
+     * waits until released.
+     */
+    private static final class BlockingClock extends Clock {
+
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Instant instant() {
+            return Instant.parse("2024-01-31T12:00:00Z");
+        }
+
+        @Override
+        public ZoneId getZone() {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}